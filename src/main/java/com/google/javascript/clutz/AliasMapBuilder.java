@@ -1,8 +1,8 @@
 package com.google.javascript.clutz;
 
-import com.google.javascript.rhino.Node;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 /**
@@ -21,7 +21,8 @@ import java.util.Set;
 public class AliasMapBuilder extends ImportBasedMapBuilder {
   @Override
   protected Map<String, String> build(
-      String localModuleId, Node moduleBody, Set<String> googProvides) {
+      InputFacts.Scope scope, InputFacts input, Set<String> googProvides) {
+    String localModuleId = scope.moduleId;
     Map<String, String> aliasMap = new HashMap<>();
     if (localModuleId == null) {
       //TODO(lucassloan): handle goog.module.get()
@@ -32,33 +33,25 @@ public class AliasMapBuilder extends ImportBasedMapBuilder {
     // names to the original symbol name eg `const C = goog.require('a.b.c');` will result in the map
     // containing 'C' -> 'module$exports$a$b$c'
     Map<String, String> localVariableToImportedSymbolNameMap = new HashMap<>();
-    for (Node statement : moduleBody.children()) {
-      if (isImportAssignment(statement)) {
+    for (InputFacts.Statement statement : scope.statements) {
+      if (statement.kind == InputFacts.StatementKind.IMPORT) {
         // `const C = goog.require()` or
         // `const C = goog.module.get()`
-        String importedModuleId = statement.getFirstFirstChild().getChildAtIndex(1).getString();
-        String localVariableName = statement.getFirstChild().getString();
+        String importedModuleId = statement.target;
+        String localVariableName = statement.name;
 
         String importedSymbolName = buildWholeModuleExportSymbolName(importedModuleId);
         localVariableToImportedSymbolNameMap.put(localVariableName, importedSymbolName);
-      } else if (isImportDestructuringAssignment(statement)) {
+      } else if (statement.kind == InputFacts.StatementKind.DESTRUCTURING_IMPORT) {
         // `const {C, Clazz: RenamedClazz} = goog.require()` or
         // `const {C, Clazz: RenamedClazz} = goog.module.get()`
-        String importedModuleId =
-            statement.getFirstChild().getChildAtIndex(1).getChildAtIndex(1).getString();
-        for (Node destructured : statement.getFirstFirstChild().children()) {
-          String originalName = destructured.getString();
+        String importedModuleId = statement.target;
+        for (Entry<String, String> destructured : statement.bindings.entrySet()) {
+          String originalName = destructured.getKey();
           // Destructuring can use the original name `const {A} = goog.require("foo.a")` or rename
           // it `const {A: RenamedA} = ...`, and closure uses whichever in the symbol name it
-          // generates, so we have to extract it.
-          String localVariableName;
-          if (destructured.getFirstChild() != null) {
-            // Renaming
-            localVariableName = destructured.getFirstChild().getString();
-          } else {
-            // No rename
-            localVariableName = originalName;
-          }
+          // generates, so the facts record both.
+          String localVariableName = destructured.getValue();
 
           String importedSymbolName = buildNamedExportSymbolName(importedModuleId, originalName);
           localVariableToImportedSymbolNameMap.put(localVariableName, importedSymbolName);
@@ -68,37 +61,37 @@ public class AliasMapBuilder extends ImportBasedMapBuilder {
 
     // Loop over the statements, looking for export statements, and add mappings to the alias map
     // if the export is of a variable that was imported
-    for (Node statement : moduleBody.children()) {
-      if (isWholeModuleExportAssignment(statement)) {
+    for (InputFacts.Statement statement : scope.statements) {
+      if (statement.kind == InputFacts.StatementKind.EXPORT) {
         // `exports = foo`
-        String localVariableName = getExportsAssignmentRHS(statement);
+        String localVariableName = statement.target;
 
         if (localVariableToImportedSymbolNameMap.containsKey(localVariableName)) {
           aliasMap.put(
               buildWholeModuleExportSymbolName(localModuleId),
               localVariableToImportedSymbolNameMap.get(localVariableName));
         }
-      } else if (isNamedExportAssignment(statement)) {
+      } else if (statement.kind == InputFacts.StatementKind.NAMED_EXPORT) {
         // `exports.foo = foo;`
-        String localVariableName = getExportsAssignmentRHS(statement);
-        String exportName = getNamedExportName(statement);
+        String localVariableName = statement.target;
+        String exportName = statement.name;
 
         if (localVariableToImportedSymbolNameMap.containsKey(localVariableName)) {
           aliasMap.put(
               buildNamedExportSymbolName(localModuleId, exportName),
               localVariableToImportedSymbolNameMap.get(localVariableName));
         }
-      } else if (isNamedExportPropAssignment(statement)) {
+      } else if (statement.kind == InputFacts.StatementKind.NAMED_PROP_EXPORT) {
         // `exports.foo = foo.bar;`
-        String localVariableName = getExportsAssignmentPropRootName(statement);
+        String localVariableName = statement.target;
         if (localVariableName.equals("exports")) {
           // This is a "local" alias between two exports from the same module.
           // There is no need to for clutz to special handle this, as the JS
           // Compiler will resolve this properly.
           continue;
         }
-        String localPropName = getExportsAssignmentPropName(statement);
-        String exportName = getNamedExportName(statement);
+        String localPropName = statement.property;
+        String exportName = statement.name;
         String localNamespaceName =
             localVariableToImportedSymbolNameMap.containsKey(localVariableName)
                 ? localVariableToImportedSymbolNameMap.get(localVariableName)
@@ -0,0 +1,98 @@
+package com.google.javascript.clutz;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Representation of a batch manifest file, which describes many clutz targets that are emitted from
+ * a single compilation.
+ *
+ * <p>The manifest is a JSON list of objects of the form:
+ *
+ * <pre>
+ * [{"target": "//foo:bar", "roots": ["foo/bar.js"], "depgraphs": ["foo/bar.depgraph"],
+ *   "output": "foo/bar.d.ts"}, ...]
+ * </pre>
+ *
+ * If "roots" is missing, the roots of the target's depgraphs are used instead.
+ */
+class BatchManifest {
+
+  static class Target {
+    String target;
+    List<String> roots = new ArrayList<>();
+    List<String> depgraphs = new ArrayList<>();
+    String output;
+
+    /** Returns the depgraph that selects the provides emitted for this target. */
+    Depgraph getDepgraph(boolean strictDeps) {
+      Depgraph parsed = Depgraph.parseFrom(depgraphs);
+      Set<String> targetRoots = roots.isEmpty() ? parsed.getRoots() : new LinkedHashSet<>(roots);
+      if (targetRoots.isEmpty()) {
+        // An empty root set means "everything is a root" to Depgraph, which is never intended here.
+        throw new IllegalArgumentException("batch target " + target + " has no roots");
+      }
+      Depgraph depgraph = Depgraph.forRoots(targetRoots, parsed.getNonroots());
+      return strictDeps ? depgraph : depgraph.withNonrootsAsRoots();
+    }
+  }
+
+  private final List<Target> targets = new ArrayList<>();
+
+  private BatchManifest() {}
+
+  List<Target> getTargets() {
+    return Collections.unmodifiableList(targets);
+  }
+
+  /** Returns all depgraph files referenced by any target, in manifest order. */
+  Set<String> getDepgraphFiles() {
+    Set<String> result = new LinkedHashSet<>();
+    for (Target target : targets) {
+      result.addAll(target.depgraphs);
+    }
+    return result;
+  }
+
+  static BatchManifest parseFrom(String fileName) {
+    BatchManifest result = new BatchManifest();
+    try {
+      String manifest = Files.asCharSource(new File(fileName), UTF_8).read();
+      List<Target> targets =
+          new Gson()
+              .fromJson(
+                  manifest,
+                  new TypeToken<List<Target>>() {
+                    /* empty */
+                  }.getType());
+      for (Target target : targets) {
+        if (target.roots == null) {
+          target.roots = new ArrayList<>();
+        }
+        if (target.depgraphs == null) {
+          target.depgraphs = new ArrayList<>();
+        }
+        if (target.output == null) {
+          throw new IllegalArgumentException("batch target " + target.target + " has no output");
+        }
+        result.targets.add(target);
+      }
+    } catch (FileNotFoundException e) {
+      throw new IllegalArgumentException("batch manifest file not found: " + fileName, e);
+    } catch (IOException e) {
+      throw new RuntimeException("error reading batch manifest file " + fileName, e);
+    }
+    return result;
+  }
+}
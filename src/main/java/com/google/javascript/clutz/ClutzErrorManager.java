@@ -1,5 +1,6 @@
 package com.google.javascript.clutz;
 
+import com.google.common.base.Throwables;
 import com.google.javascript.jscomp.CheckLevel;
 import com.google.javascript.jscomp.JSError;
 import com.google.javascript.jscomp.MessageFormatter;
@@ -13,6 +14,8 @@ import java.io.PrintStream;
 final class ClutzErrorManager extends PrintStreamErrorManager {
   private final boolean debug;
   boolean reportClutzMissingTypes = true;
+  /** If set, the first ERROR aborts the running compilation with a {@link FailFastException}. */
+  boolean failFast = false;
 
   ClutzErrorManager(PrintStream stream, MessageFormatter formatter, boolean debug) {
     super(formatter, stream);
@@ -30,10 +33,13 @@ final class ClutzErrorManager extends PrintStreamErrorManager {
       reportClutzMissingTypes = false;
       // Leave out the location on purpose, the specific places of missing types are reported from
       // the original message; without a location this error sorts first, so that it is seen first.
-      this.report(CheckLevel.ERROR, JSError.make(DeclarationGenerator.CLUTZ_MISSING_TYPES));
+      super.report(CheckLevel.ERROR, JSError.make(DeclarationGenerator.CLUTZ_MISSING_TYPES));
       // Fall through, still report the actual error below.
     }
     super.report(level, error);
+    if (failFast && level == CheckLevel.ERROR) {
+      throw new FailFastException();
+    }
   }
 
   @Override
@@ -47,4 +53,28 @@ final class ClutzErrorManager extends PrintStreamErrorManager {
   void doGenerateReport() {
     super.generateReport();
   }
+
+  /**
+   * Returns true if the exception is, or was caused by, a {@link FailFastException}. Errors that
+   * are reported from within a NodeTraversal reach the caller of the compiler wrapped in an
+   * internal compiler error.
+   */
+  static boolean isFailFast(Throwable e) {
+    for (Throwable cause : Throwables.getCausalChain(e)) {
+      if (cause instanceof FailFastException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Thrown from {@link #report} in fail fast mode to unwind the compiler passes. The error itself
+   * has already been collected, and is printed by {@link #doGenerateReport}.
+   */
+  static final class FailFastException extends RuntimeException {
+    FailFastException() {
+      super("aborted on the first error (--fail_fast)");
+    }
+  }
 }
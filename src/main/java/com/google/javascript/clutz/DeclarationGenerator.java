@@ -15,16 +15,18 @@ import com.google.common.base.CharMatcher;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
-import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ListMultimap;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Ordering;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
-import com.google.common.io.Files;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import com.google.javascript.common.FileWatcher;
+import com.google.javascript.common.OutputFileWriter;
+import com.google.javascript.common.PhaseProfiler;
 import com.google.javascript.jscomp.AbstractCommandLineRunner;
 import com.google.javascript.jscomp.CompilerInput;
 import com.google.javascript.jscomp.DiagnosticType;
@@ -32,7 +34,6 @@ import com.google.javascript.jscomp.ErrorFormat;
 import com.google.javascript.jscomp.SourceFile;
 import com.google.javascript.jscomp.TypedScope;
 import com.google.javascript.jscomp.TypedVar;
-import com.google.javascript.rhino.InputId;
 import com.google.javascript.rhino.JSDocInfo;
 import com.google.javascript.rhino.JSDocInfo.Visibility;
 import com.google.javascript.rhino.JSTypeExpression;
@@ -54,15 +55,20 @@ import com.google.javascript.rhino.jstype.TemplateTypeMap;
 import com.google.javascript.rhino.jstype.TemplatizedType;
 import com.google.javascript.rhino.jstype.UnionType;
 import com.google.javascript.rhino.jstype.Visitor;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.PrintStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -72,6 +78,10 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.zip.ZipFile;
@@ -153,6 +163,9 @@ class DeclarationGenerator {
 
   private static final String MODULE_PREFIX = "module$exports$";
 
+  /** Name of the file holding the externs and unprovided types shared by all output shards. */
+  static final String COMMON_SHARD = "clutz_common.d.ts";
+
   private static final Splitter DOT_SPLITTER = Splitter.on('.');
 
   public static void main(String[] args) {
@@ -166,19 +179,102 @@ class DeclarationGenerator {
       System.err.println();
       System.exit(1);
     }
+    if (options.watch) {
+      watch(args, options);
+    }
+    System.exit(generate(options));
+  }
+
+  /** Generates the declarations for the options and returns the process exit code. */
+  private static int generate(Options options) {
     try {
       DeclarationGenerator generator = new DeclarationGenerator(options);
-      generator.generateDeclarations();
+      if (options.batchManifest != null) {
+        generator.generateBatchDeclarations();
+      } else {
+        generator.generateDeclarations();
+      }
       if (generator.hasErrors()) {
         // Already reported through the print stream.
-        System.exit(2);
+        return 2;
       }
     } catch (Exception e) {
       e.printStackTrace(System.err);
       System.err.println("Uncaught exception in clutz, exiting.");
+      return 3;
+    }
+    return 0;
+  }
+
+  /**
+   * Regenerates the declarations whenever one of the watched inputs changes, until the process is
+   * killed. The Closure compiler cannot be reused for a second compilation, so every rebuild
+   * compiles all inputs from scratch, but output files with unchanged content are not rewritten.
+   */
+  private static void watch(String[] args, Options options) {
+    Path cacheRoot;
+    try {
+      cacheRoot = createWatchCacheRoot();
+    } catch (IOException e) {
+      e.printStackTrace(System.err);
+      System.err.println("Unable to create the --watch caches, exiting.");
+      System.exit(3);
+      return;
+    }
+    useWatchCaches(options, cacheRoot);
+    List<String> watchedFiles = options.getWatchedFiles();
+    generate(options);
+    try (FileWatcher watcher = new FileWatcher(FileWatcher.DEFAULT_DEBOUNCE_MILLIS)) {
+      while (true) {
+        Set<Path> changed = watcher.awaitChanges(FileWatcher.toPaths(watchedFiles));
+        System.err.println("Regenerating, changed: " + Joiner.on(", ").join(changed));
+        try {
+          // Depgraphs and manifests may have changed the inputs, so the options are parsed again.
+          options = new Options(args);
+        } catch (CmdLineException e) {
+          System.err.println(e.getMessage());
+          continue;
+        }
+        useWatchCaches(options, cacheRoot);
+        watchedFiles = options.getWatchedFiles();
+        generate(options);
+      }
+    } catch (IOException | InterruptedException e) {
+      e.printStackTrace(System.err);
+      System.err.println("Unable to watch input files, exiting.");
       System.exit(3);
     }
-    System.exit(0);
+  }
+
+  /** Creates a temporary directory for the caches of a --watch session, deleted on exit. */
+  private static Path createWatchCacheRoot() throws IOException {
+    Path cacheRoot = Files.createTempDirectory("clutz-watch");
+    Runtime.getRuntime()
+        .addShutdownHook(
+            new Thread(
+                () -> {
+                  try {
+                    MoreFiles.deleteRecursively(cacheRoot, RecursiveDeleteOption.ALLOW_INSECURE);
+                  } catch (IOException e) {
+                    // Left behind in the temporary directory.
+                  }
+                }));
+    return cacheRoot;
+  }
+
+  /**
+   * Keeps the --cache_dir and --facts_cache_dir of a --watch session in its temporary directory,
+   * unless they are given, so that iterations reuse the facts of unchanged inputs and the output of
+   * unchanged inputs, e.g. after a change was reverted. The result cache needs the whole output as
+   * a string, so it is not added with --bounded_memory.
+   */
+  private static void useWatchCaches(Options options, Path cacheRoot) {
+    if (options.cacheDir == null && !options.boundedMemory) {
+      options.cacheDir = cacheRoot.resolve("results").toString();
+    }
+    if (options.factsCacheDir == null) {
+      options.factsCacheDir = cacheRoot.resolve("facts").toString();
+    }
   }
 
   static final DiagnosticType CLUTZ_MISSING_TYPES =
@@ -216,10 +312,21 @@ class DeclarationGenerator {
   private final Options opts;
   private final InitialParseRetainingCompiler compiler;
   private final ClutzErrorManager errorManager;
-  private StringWriter out = new StringWriter();
+  private final PhaseProfiler profiler;
+  private final OutputFileWriter outputWriter = new OutputFileWriter();
+  private DeclarationModel out = new DeclarationModel();
+
+  /** The sorted and classified top scope symbols, built once the compilation succeeded. */
+  private TopScopeIndex topScopeIndex;
 
-  /** If symbols x.y.z and x.y.w exist, childListMap['x.y'] contains the TypedVars for z and w. */
-  private final ListMultimap<String, TypedVar> childListMap = ArrayListMultimap.create();
+  /** Interned qualified names of all symbols, namespaces and used types. */
+  private final QualifiedNameTable names = new QualifiedNameTable();
+
+  /**
+   * If symbols x.y.z and x.y.w exist, childLists[id of 'x.y'] contains the TypedVars for z and w.
+   * Namespaces without children have no or a null entry.
+   */
+  private final List<List<TypedVar>> childLists = new ArrayList<>();
 
   /**
    * Maps types to names for all emitted typedefs, so that further type walks just use the name.
@@ -231,10 +338,32 @@ class DeclarationGenerator {
   private final Map<JSType, String> typedefs = new HashMap<>();
 
   /**
-   * Aggregates all emitted types, used in a final pass to find types emitted in type position but
-   * not declared, possibly due to missing goog.provides.
+   * Aggregates all emitted types by name id, used in a final pass to find types emitted in type
+   * position but not declared, possibly due to missing goog.provides.
+   */
+  private final BitSet typesUsed = new BitSet();
+
+  /** The name ids of all namespaces that contain a used type. */
+  private final BitSet namespacesOfTypesUsed = new BitSet();
+
+  private int typesUsedCount = 0;
+
+  /**
+   * Class hierarchy facts, computed once per type and built on the cached facts of the parent. In
+   * deep hierarchies the ancestors would otherwise be re-aggregated for every descendant.
    */
-  private final Set<String> typesUsed = new LinkedHashSet<>();
+  private final Map<FunctionType, Set<String>> superClassFieldsCache = new IdentityHashMap<>();
+
+  private final Map<FunctionType, Boolean> mustEmitConstructorCache = new IdentityHashMap<>();
+  private final Map<ObjectType, Set<ObjectType>> relatedInterfacesCache = new IdentityHashMap<>();
+  private final Map<JSType, SymbolIteratorKind> symbolIteratorCache = new IdentityHashMap<>();
+
+  /** The [Symbol.iterator] signature emitted for a class, see maybeEmitSymbolIterator. */
+  private enum SymbolIteratorKind {
+    NONE,
+    ITERABLE_ITERATOR,
+    ITERATOR
+  }
 
   /**
    * In partial mode, closure doesn't know the correct name of imported symbols, and importRenameMap
@@ -265,37 +394,116 @@ class DeclarationGenerator {
    */
   private Set<String> collidingProvides = new LinkedHashSet<>();
 
+  /** Set if the output of --verify_skip_function_bodies differs from a full compilation. */
+  private boolean skipFunctionBodiesMismatch = false;
+
+  /** The diagnostics reported by the error manager, if they are stored in the result cache. */
+  @Nullable private final ByteArrayOutputStream diagnostics;
+
+  /** Where diagnostics are printed: stderr, the {@link #diagnostics} buffer or nowhere. */
+  private final PrintStream errorStream;
+
+  /** Set if the result was read from the cache and has errors. */
+  private boolean cachedErrors = false;
+
+  /** The --emit_index sidecar of the last rendered or cached output, written with it. */
+  @Nullable private String indexJson;
+
   DeclarationGenerator(Options opts) {
+    this(opts, opts.skipFunctionBodies, true);
+  }
+
+  private DeclarationGenerator(
+      Options opts, boolean skipFunctionBodies, boolean reportDiagnostics) {
     this.opts = opts;
     this.compiler = new InitialParseRetainingCompiler();
     compiler.disableThreads();
+    compiler.setSkipFunctionBodies(skipFunctionBodies);
+    // The parsed clones are only read by the --partialInput map builders.
+    boolean retainParsedInputs = !opts.boundedMemory || opts.partialInput;
+    compiler.setRetainParsedInputs(fileName -> retainParsedInputs);
+    // With a result cache, diagnostics are buffered, so that they can be stored with the output.
+    this.diagnostics = opts.useResultCache() ? new ByteArrayOutputStream() : null;
+    // The full compilation of --verify_skip_function_bodies does not report, the run it verifies
+    // already did.
+    if (!reportDiagnostics) {
+      errorStream = new PrintStream(ByteStreams.nullOutputStream());
+    } else if (diagnostics != null) {
+      errorStream = new PrintStream(diagnostics, true);
+    } else {
+      errorStream = System.err;
+    }
     this.errorManager =
         new ClutzErrorManager(
-            System.err, ErrorFormat.MULTILINE.toFormatter(compiler, true), opts.debug);
+            errorStream, ErrorFormat.MULTILINE.toFormatter(compiler, true), opts.debug);
     compiler.setErrorManager(errorManager);
+    this.profiler = opts.profileFile != null ? PhaseProfiler.create() : PhaseProfiler.DISABLED;
     // Calling compiler.getTypeRegistry() is not safe here,
     // because it initializes some internal compiler structures.
     // We should pass the correct CompilerOptions, before that.
   }
 
   boolean hasErrors() {
-    return errorManager.getErrorCount() > 0;
+    return errorManager.getErrorCount() > 0 || skipFunctionBodiesMismatch || cachedErrors;
   }
 
   /**
-   * Precompute the list of children symbols for all top-scope symbols.
+   * Precompute the list of children symbols for all top-scope symbols, in the order of {@link
+   * TopScopeIndex#getSymbols}.
    *
    * <p>I.e. For each x.y -> [x.y.z, x.y.w]
    */
   void precomputeChildLists() {
-    for (TypedVar var : compiler.getTopScope().getAllSymbols()) {
-      String namespace = getNamespace(var.getName());
-      if (!namespace.equals("")) {
-        childListMap.put(namespace, var);
+    for (TypedVar var : topScopeIndex.getSymbols()) {
+      int namespace = names.getParent(names.intern(var.getName()));
+      if (namespace == QualifiedNameTable.ROOT) {
+        continue;
+      }
+      while (childLists.size() <= namespace) {
+        childLists.add(null);
       }
+      if (childLists.get(namespace) == null) {
+        childLists.set(namespace, new ArrayList<>());
+      }
+      childLists.get(namespace).add(var);
+    }
+  }
+
+  private List<TypedVar> getChildSymbols(String namespace) {
+    int id = names.lookup(namespace);
+    if (id == QualifiedNameTable.NOT_FOUND
+        || id >= childLists.size()
+        || childLists.get(id) == null) {
+      return Collections.emptyList();
+    }
+    return childLists.get(id);
+  }
+
+  private void addTypeUsed(String name) {
+    int id = names.intern(name);
+    if (typesUsed.get(id)) {
+      return;
+    }
+    typesUsed.set(id);
+    typesUsedCount++;
+    for (int ns = names.getParent(id);
+        ns != QualifiedNameTable.ROOT && !namespacesOfTypesUsed.get(ns);
+        ns = names.getParent(ns)) {
+      namespacesOfTypesUsed.set(ns);
     }
   }
 
+  private boolean isTypeUsed(String name) {
+    int id = names.lookup(name);
+    return id != QualifiedNameTable.NOT_FOUND && typesUsed.get(id);
+  }
+
+  /** Returns whether a used type is declared in the given namespace or any of its descendants. */
+  private boolean hasTypeUsedIn(String namespace) {
+    int id = names.lookup(namespace);
+    return id != QualifiedNameTable.NOT_FOUND && namespacesOfTypesUsed.get(id);
+  }
+
   /**
    * Finds all typedefs in the program and build a Type -> typedef name mapping. The mapping is
    * needed because when walking type definitions closure inlines the typedefs values.
@@ -350,8 +558,223 @@ class DeclarationGenerator {
   }
 
   void generateDeclarations() {
-    List<SourceFile> sourceFiles = new ArrayList<>();
+    if (opts.shardOutputByRoot) {
+      generateShardedDeclarations();
+      reportOutputs();
+      writeProfile();
+      return;
+    }
+    if (opts.streamOutput()) {
+      generateStreamedDeclarations();
+      reportOutputs();
+      writeProfile();
+      return;
+    }
+    String result;
+    if (opts.useResultCache()) {
+      result = generateCachedDeclarations();
+    } else {
+      result = generateDeclarations(getSourceFiles(), getExternFiles(), opts.depgraph);
+    }
+    writeOutput(opts.output, result);
+    reportOutputs();
+    writeProfile();
+    if (opts.skipFunctionBodies && opts.verifySkipFunctionBodies) {
+      verifySkipFunctionBodies(result);
+    }
+  }
 
+  /**
+   * Like {@link #generateDeclarations(List, List, Depgraph)}, but renders the declarations straight
+   * into the output, for --bounded_memory.
+   */
+  private void generateStreamedDeclarations() {
+    DeclarationModel model = new DeclarationModel();
+    if (compile(getSourceFiles(), getExternFiles())) {
+      model = produceModel(opts.depgraph, null);
+    }
+    errorManager.doGenerateReport();
+    writeOutput(opts.output, model);
+  }
+
+  /**
+   * Returns the declarations from the --cache_dir, or generates and caches them. The diagnostics
+   * are printed either way, like without the cache.
+   */
+  private String generateCachedDeclarations() {
+    ResultCache cache = new ResultCache(opts.cacheDir, opts.cacheMaxSizeMb * 1024 * 1024);
+    List<SourceFile> sourceFiles = getSourceFiles();
+    List<SourceFile> externs = getExternFiles();
+    String key;
+    try (PhaseProfiler.Phase p = profiler.start("cache")) {
+      key = ResultCache.computeKey(opts, sourceFiles, externs);
+      ResultCache.Entry entry = cache.get(key);
+      if (entry != null) {
+        System.err.print(entry.diagnostics);
+        cachedErrors = entry.hasErrors;
+        indexJson = entry.index;
+        return entry.dts;
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to read the inputs to compute the cache key", e);
+    }
+    String result = generateDeclarations(sourceFiles, externs, opts.depgraph);
+    String reported = diagnostics.toString();
+    System.err.print(reported);
+    cache.put(
+        key,
+        new ResultCache.Entry(result, indexJson, reported, errorManager.getErrorCount() > 0));
+    return result;
+  }
+
+  /** Compares the output produced with pruned function bodies to the one of a full compilation. */
+  private void verifySkipFunctionBodies(String result) {
+    DeclarationGenerator fullGenerator = new DeclarationGenerator(opts, false, false);
+    String expected =
+        fullGenerator.generateDeclarations(getSourceFiles(), getExternFiles(), opts.depgraph);
+    if (expected.equals(result)) {
+      return;
+    }
+    skipFunctionBodiesMismatch = true;
+    String[] expectedLines = expected.split("\n", -1);
+    String[] actualLines = result.split("\n", -1);
+    int line = 0;
+    while (line < expectedLines.length
+        && line < actualLines.length
+        && expectedLines[line].equals(actualLines[line])) {
+      line++;
+    }
+    System.err.println(
+        "--skip_function_bodies changed the output ("
+            + compiler.getPrunedFunctionBodies()
+            + " bodies pruned). First difference at line "
+            + (line + 1)
+            + ":");
+    System.err.println("  full:   " + (line < expectedLines.length ? expectedLines[line] : ""));
+    System.err.println("  pruned: " + (line < actualLines.length ? actualLines[line] : ""));
+  }
+
+  /**
+   * Compiles the union of all batch manifest sources once, then emits one .d.ts per target against
+   * the shared type registry.
+   *
+   * <p>Targets are emitted one after the other, because the emit state (output writer, indentation,
+   * used types) lives on this generator.
+   */
+  void generateBatchDeclarations() {
+    BatchManifest manifest = BatchManifest.parseFrom(opts.batchManifest);
+    if (compile(getSourceFiles(), getExternFiles())) {
+      for (BatchManifest.Target target : manifest.getTargets()) {
+        if (opts.streamOutput()) {
+          writeOutput(target.output, produceModel(target.getDepgraph(opts.strictDeps), null));
+        } else {
+          writeOutput(target.output, produceDts(target.getDepgraph(opts.strictDeps)));
+        }
+      }
+    }
+    errorManager.doGenerateReport();
+    reportOutputs();
+    writeProfile();
+  }
+
+  private void reportOutputs() {
+    if (opts.debug) {
+      outputWriter.report(System.err);
+    }
+  }
+
+  private void writeProfile() {
+    if (opts.profileFile != null) {
+      profiler.write(opts.profileFile, opts.profileFormat, PhaseProfiler.DEFAULT_TOP_N);
+    }
+  }
+
+  /**
+   * Writes one .d.ts per root file into the output directory, with the provides of that file. The
+   * declarations shared by all shards go into {@link #COMMON_SHARD}, which every shard references.
+   *
+   * <p>Shards are emitted one after the other, as the emit state lives on this generator, and
+   * rendered and written concurrently.
+   */
+  void generateShardedDeclarations() {
+    Map<String, DeclarationModel> shards = new LinkedHashMap<>();
+    DeclarationModel common = new DeclarationModel();
+    if (compile(getSourceFiles(), getExternFiles())) {
+      common = produceModel(opts.depgraph, shards);
+    }
+    errorManager.doGenerateReport();
+
+    Map<String, DeclarationModel> outputs = new LinkedHashMap<>();
+    outputs.put(COMMON_SHARD, common);
+    for (Entry<String, DeclarationModel> shard : shards.entrySet()) {
+      String path = getShardPath(shard.getKey());
+      if (outputs.put(path, shard.getValue()) != null) {
+        throw new IllegalArgumentException(
+            "Root file " + shard.getKey() + " has the same shard path as another output: " + path);
+      }
+    }
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            Math.min(outputs.size(), Runtime.getRuntime().availableProcessors()));
+    try {
+      List<Future<?>> writes = new ArrayList<>();
+      for (Entry<String, DeclarationModel> output : outputs.entrySet()) {
+        File file = new File(opts.output, output.getKey());
+        writes.add(
+            executor.submit(
+                () -> {
+                  DeclarationIndex index = opts.emitIndex ? new DeclarationIndex() : null;
+                  if (opts.streamOutput()) {
+                    outputWriter.write(
+                        file,
+                        writer ->
+                            DeclarationRenderer.render(
+                                output.getValue(), index, opts.compact, writer));
+                  } else {
+                    outputWriter.write(
+                        file, DeclarationRenderer.render(output.getValue(), index, opts.compact));
+                  }
+                  if (index != null) {
+                    outputWriter.write(
+                        new File(file.getPath() + DeclarationIndex.SUFFIX), index.toJson());
+                  }
+                  return null;
+                }));
+      }
+      for (Future<?> write : writes) {
+        write.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while writing output shards", e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Unable to write output shards to " + opts.output, e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Returns the output path of the shard of the given root file, relative to the output dir. Throws
+   * if the root file would be written outside of the output dir.
+   */
+  static String getShardPath(String rootFile) {
+    String withoutExtension =
+        rootFile.endsWith(".js") ? rootFile.substring(0, rootFile.length() - 3) : rootFile;
+    Path path = Paths.get(withoutExtension);
+    if (path.isAbsolute()) {
+      path = path.getRoot().relativize(path);
+    }
+    path = path.normalize();
+    if (path.toString().isEmpty() || path.startsWith("..")) {
+      throw new IllegalArgumentException(
+          "Root file " + rootFile + " has no shard path inside the output directory");
+    }
+    return path.toString().replace(File.separatorChar, '/') + ".d.ts";
+  }
+
+  private List<SourceFile> getSourceFiles() {
+    List<SourceFile> sourceFiles = new ArrayList<>();
     for (String source : opts.arguments) {
       if (!source.endsWith(".zip")) {
         sourceFiles.add(SourceFile.fromPath(Paths.get(source), UTF_8));
@@ -363,6 +786,10 @@ class DeclarationGenerator {
           .map(p -> SourceFile.fromPath(p, UTF_8))
           .forEach(sourceFiles::add);
     }
+    return sourceFiles;
+  }
+
+  private List<SourceFile> getExternFiles() {
     List<SourceFile> externFiles = new ArrayList<>();
     for (String extern : opts.externs) {
       externFiles.add(SourceFile.fromPath(Paths.get(extern), UTF_8));
@@ -370,16 +797,38 @@ class DeclarationGenerator {
     if (opts.closureEnv != null) {
       externFiles.addAll(getDefaultExterns(opts));
     }
-    String result = generateDeclarations(sourceFiles, externFiles, opts.depgraph);
+    return externFiles;
+  }
 
-    if ("-".equals(opts.output)) {
-      System.out.println(result);
+  private void writeOutput(String fileName, String content) {
+    if ("-".equals(fileName)) {
+      System.out.println(content);
     } else {
-      File output = new File(opts.output);
-      try {
-        Files.asCharSink(output, UTF_8).write(result);
-      } catch (IOException e) {
-        throw new IllegalArgumentException("Unable to write to file " + opts.output, e);
+      outputWriter.write(new File(fileName), content);
+      if (indexJson != null) {
+        outputWriter.write(new File(fileName + DeclarationIndex.SUFFIX), indexJson);
+      }
+    }
+  }
+
+  /** Renders the model straight into the output file, or stdout for "-". */
+  private void writeOutput(String fileName, DeclarationModel model) {
+    try (PhaseProfiler.Phase p = profiler.start("render")) {
+      if ("-".equals(fileName)) {
+        try {
+          DeclarationRenderer.render(model, null, opts.compact, System.out);
+        } catch (IOException e) {
+          throw new AssertionError("PrintStream does not throw", e);
+        }
+        System.out.println();
+        return;
+      }
+      DeclarationIndex index = opts.emitIndex ? new DeclarationIndex() : null;
+      outputWriter.write(
+          new File(fileName),
+          writer -> DeclarationRenderer.render(model, index, opts.compact, writer));
+      if (index != null) {
+        outputWriter.write(new File(fileName + DeclarationIndex.SUFFIX), index.toJson());
       }
     }
   }
@@ -407,18 +856,63 @@ class DeclarationGenerator {
   String generateDeclarations(
       List<SourceFile> sourceFiles, List<SourceFile> externs, Depgraph depgraph)
       throws AssertionError {
+    // TODO(rado): replace with null and do not emit file when errors.
+    String dts = "";
+    if (compile(sourceFiles, externs)) {
+      dts = produceDts(depgraph);
+    }
+    errorManager.doGenerateReport();
+    return dts;
+  }
+
+  /**
+   * Compiles the given sources and prepares the state shared by all subsequent {@link
+   * #produceDts} calls. Returns false if the compilation failed to produce a top scope.
+   */
+  private boolean compile(List<SourceFile> sourceFiles, List<SourceFile> externs) {
+    Map<String, String> factsKeys = new HashMap<>();
+    Map<String, InputFacts> cachedFacts = lookUpInputFacts(sourceFiles, externs, factsKeys);
     // Compile should always be first here, because it sets internal state.
-    compiler.compile(externs, sourceFiles, opts.getCompilerOptions());
+    errorManager.failFast = opts.failFast;
+    try (PhaseProfiler.Phase p = profiler.start("compile")) {
+      compiler.compile(externs, sourceFiles, opts.getCompilerOptions());
+    } catch (RuntimeException e) {
+      // Errors reported from NodeTraversal callbacks reach here wrapped by
+      // Compiler.throwInternalError, so look for the abort in the whole causal chain.
+      if (!ClutzErrorManager.isFailFast(e)) {
+        throw e;
+      }
+      // The remaining passes were cancelled, so there is no usable top scope to emit from.
+      return false;
+    } finally {
+      errorManager.failFast = false;
+    }
+    if (opts.pruneToDepgraphRoots) {
+      reportPrunedFiles(sourceFiles);
+    }
     if (opts.partialInput) {
-      importRenameMap =
-          new ImportRenameMapBuilder()
-              .build(compiler.getParsedInputs(), opts.depgraph.getGoogProvides());
-      aliasMap =
-          new AliasMapBuilder().build(compiler.getParsedInputs(), opts.depgraph.getGoogProvides());
-      legacyNamespaceReexportMap =
-          new LegacyNamespaceReexportMapBuilder()
-              .build(compiler.getParsedInputs(), opts.depgraph.getGoogProvides());
+      List<InputFacts> inputFacts;
+      try (PhaseProfiler.Phase p = profiler.start("InputFacts")) {
+        inputFacts = collectInputFacts(cachedFacts, factsKeys);
+      }
+      try (PhaseProfiler.Phase p = profiler.start("ImportRenameMapBuilder")) {
+        importRenameMap =
+            new ImportRenameMapBuilder()
+                .buildFromFacts(inputFacts, opts.depgraph.getGoogProvides());
+      }
+      try (PhaseProfiler.Phase p = profiler.start("AliasMapBuilder")) {
+        aliasMap =
+            new AliasMapBuilder().buildFromFacts(inputFacts, opts.depgraph.getGoogProvides());
+      }
+      try (PhaseProfiler.Phase p = profiler.start("LegacyNamespaceReexportMapBuilder")) {
+        legacyNamespaceReexportMap =
+            new LegacyNamespaceReexportMapBuilder()
+                .buildFromFacts(inputFacts, opts.depgraph.getGoogProvides());
+      }
       collidingProvides = opts.collidingProvides;
+      if (opts.boundedMemory) {
+        compiler.releaseParsedInputs();
+      }
     }
 
     unknownType = compiler.getTypeRegistry().getNativeType(JSTypeNative.UNKNOWN_TYPE);
@@ -429,16 +923,109 @@ class DeclarationGenerator {
     iteratorIterableType = compiler.getTypeRegistry().getGlobalType("IteratorIterable");
 
     arrayType = compiler.getTypeRegistry().getGlobalType("Array");
-    // TODO(rado): replace with null and do not emit file when errors.
-    String dts = "";
     // If there is an error top scope is null.
-    if (compiler.getTopScope() != null) {
+    if (compiler.getTopScope() == null) {
+      return false;
+    }
+    try (PhaseProfiler.Phase p = profiler.start("TopScopeIndex")) {
+      topScopeIndex = new TopScopeIndex(compiler, this::shouldAvoidGeneratingExterns);
+    }
+    try (PhaseProfiler.Phase p = profiler.start("precomputeChildLists")) {
       precomputeChildLists();
+    }
+    try (PhaseProfiler.Phase p = profiler.start("collectTypedefs")) {
       collectTypedefs();
-      dts = produceDts(depgraph);
     }
-    errorManager.doGenerateReport();
-    return dts;
+    return true;
+  }
+
+  /**
+   * Looks up the {@link InputFacts} of the inputs in the --facts_cache_dir, and only retains the
+   * parsed inputs whose facts are not cached. Returns the cached facts by file name, and fills keys
+   * with the cache key of every input.
+   */
+  private Map<String, InputFacts> lookUpInputFacts(
+      List<SourceFile> sourceFiles, List<SourceFile> externs, Map<String, String> keys) {
+    Map<String, InputFacts> cachedFacts = new HashMap<>();
+    if (!opts.partialInput || opts.factsCacheDir == null) {
+      return cachedFacts;
+    }
+    InputFactsCache cache = createInputFactsCache();
+    try (PhaseProfiler.Phase p = profiler.start("factsCache")) {
+      for (SourceFile file : Iterables.concat(externs, sourceFiles)) {
+        String key = InputFactsCache.computeKey(file.getCode());
+        keys.put(file.getName(), key);
+        InputFacts facts = cache.get(key);
+        if (facts != null) {
+          cachedFacts.put(file.getName(), facts);
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to read the inputs to compute the cache key", e);
+    }
+    compiler.setRetainParsedInputs(fileName -> !cachedFacts.containsKey(fileName));
+    return cachedFacts;
+  }
+
+  /**
+   * Returns the facts of all inputs, in the order of the compiler inputs. Facts that are not cached
+   * are extracted from the retained parsed inputs, and added to the --facts_cache_dir.
+   */
+  private List<InputFacts> collectInputFacts(
+      Map<String, InputFacts> cachedFacts, Map<String, String> keys) {
+    Map<String, Node> parsedInputs = new HashMap<>();
+    for (Node ast : compiler.getParsedInputs()) {
+      parsedInputs.put(ast.getSourceFileName(), ast);
+    }
+    InputFactsCache cache = opts.factsCacheDir != null ? createInputFactsCache() : null;
+    boolean stored = false;
+    List<InputFacts> inputFacts = new ArrayList<>();
+    for (CompilerInput input : compiler.getInputsById().values()) {
+      InputFacts facts = cachedFacts.get(input.getName());
+      if (facts == null) {
+        Node ast = parsedInputs.get(input.getName());
+        if (ast == null) {
+          continue;
+        }
+        facts = InputFacts.extract(ast);
+        String key = keys.get(input.getName());
+        if (cache != null && key != null) {
+          cache.put(key, facts);
+          stored = true;
+        }
+      }
+      inputFacts.add(facts);
+    }
+    if (stored) {
+      cache.evict();
+    }
+    return inputFacts;
+  }
+
+  private InputFactsCache createInputFactsCache() {
+    return new InputFactsCache(opts.factsCacheDir, opts.factsCacheMaxSizeMb * 1024 * 1024);
+  }
+
+  private void reportPrunedFiles(List<SourceFile> sourceFiles) {
+    Set<String> compiledFiles = new HashSet<>();
+    if (compiler.getRoot() != null) {
+      // Pruned inputs are detached from the source root.
+      for (Node script : compiler.getRoot().getLastChild().children()) {
+        compiledFiles.add(script.getSourceFileName());
+      }
+    }
+    int droppedCount = 0;
+    for (SourceFile sourceFile : sourceFiles) {
+      if (!compiledFiles.contains(sourceFile.getName())) {
+        droppedCount++;
+      }
+    }
+    errorStream.println(
+        "clutz: --prune_to_depgraph_roots dropped "
+            + droppedCount
+            + " of "
+            + sourceFiles.size()
+            + " files not required by the depgraph roots.");
   }
 
   private String getNamespace(String input) {
@@ -450,7 +1037,28 @@ class DeclarationGenerator {
   }
 
   String produceDts(Depgraph depgraph) {
-    out = new StringWriter();
+    DeclarationModel model = produceModel(depgraph, null);
+    try (PhaseProfiler.Phase p = profiler.start("render")) {
+      DeclarationIndex index = opts.emitIndex ? new DeclarationIndex() : null;
+      String dts = DeclarationRenderer.render(model, index, opts.compact);
+      indexJson = index != null ? index.toJson() : null;
+      return dts;
+    }
+  }
+
+  /**
+   * Emits the declarations of all provides of root files in the given depgraph.
+   *
+   * <p>If shards is not null, the declarations of each root file's provides go into a separate
+   * shard keyed by the file's path, and only the shared declarations are returned.
+   */
+  private DeclarationModel produceModel(
+      Depgraph depgraph, @Nullable Map<String, DeclarationModel> shards) {
+    out = new DeclarationModel();
+    // Only types used by this output are relevant, produceDts may run once per batch target.
+    typesUsed.clear();
+    namespacesOfTypesUsed.clear();
+    typesUsedCount = 0;
 
     // Note: the specific emit of this header is depended upon by tsickle.
     emitComment("generated by clutz.");
@@ -459,6 +1067,7 @@ class DeclarationGenerator {
     TreeSet<String> provides = new TreeSet<>();
     Set<String> rewrittenProvides = new TreeSet<>();
     Set<String> transitiveProvides = new TreeSet<>();
+    Map<String, String> provideFiles = new HashMap<>();
 
     for (CompilerInput compilerInput : compiler.getInputsById().values()) {
       if (shouldSkipSourceFile(compilerInput.getSourceFile())) {
@@ -482,6 +1091,9 @@ class DeclarationGenerator {
       String originalPath = compilerInput.getSourceFile().getOriginalPath();
       if (depgraph.isRoot(originalPath)) {
         provides.addAll(filteredProvides);
+        for (String p : filteredProvides) {
+          provideFiles.put(p, originalPath);
+        }
       }
     }
 
@@ -502,7 +1114,11 @@ class DeclarationGenerator {
 
     processReservedSymbols(provides, topScope);
 
+    DeclarationModel commonOut = out;
     for (String provide : provides) {
+      if (shards != null) {
+        out = getShard(shards, provideFiles.get(provide));
+      }
       TypedVar symbol = topScope.getOwnSlot(provide);
       String emitName = provide;
       String rewritenProvide = MODULE_PREFIX + provide.replace('.', '$');
@@ -556,20 +1172,69 @@ class DeclarationGenerator {
       if (isDefault) {
         namespace = getNamespace(symbol.getName());
       }
-      declareNamespace(namespace, symbol, emitName, isDefault, transitiveProvides, false);
-      declareModule(provide, isDefault, emitName);
+      try (PhaseProfiler.Phase p = profiler.start("declareNamespace", provide)) {
+        declareNamespace(namespace, symbol, emitName, isDefault, transitiveProvides, false);
+        declareModule(provide, isDefault, emitName);
+      }
     }
+    out = commonOut;
     // In order to typecheck in the presence of third-party externs, emit all extern symbols.
-    processExternSymbols();
+    // When only reachable externs are requested, the extern pass runs last, so that it also sees
+    // the types used by unprovided types.
+    if (!opts.emitReachableExternsOnly) {
+      try (PhaseProfiler.Phase p = profiler.start("processExternSymbols")) {
+        processExternSymbols();
+      }
+    }
 
     // For the purposes of determining which provides have been emitted
     // combine original provides and rewritten ones.
     provides.addAll(rewrittenProvides);
-    processUnprovidedTypes(provides, transitiveProvides);
+    Set<String> typesEmitted = new LinkedHashSet<>();
+    try (PhaseProfiler.Phase p = profiler.start("processUnprovidedTypes")) {
+      processUnprovidedTypes(provides, transitiveProvides, typesEmitted);
+    }
     declareLegacyNamespaceAliases();
+    if (opts.emitReachableExternsOnly) {
+      try (PhaseProfiler.Phase p = profiler.start("processExternSymbols")) {
+        processReachableExternSymbols(provides, transitiveProvides, typesEmitted);
+      }
+    }
 
     checkState(indent == 0, "indent must be zero after printing, but is %s", indent);
-    return out.toString();
+    // Batch targets emit from the same top scope one after the other.
+    if (opts.boundedMemory && opts.batchManifest == null) {
+      releaseTopScope();
+    }
+    out.finish();
+    return out;
+  }
+
+  /**
+   * Drops the child lists and the top scope index once all namespaces are emitted, so that they can
+   * be collected while the output is rendered.
+   */
+  private void releaseTopScope() {
+    childLists.clear();
+    topScopeIndex = null;
+  }
+
+  private DeclarationModel getShard(Map<String, DeclarationModel> shards, String file) {
+    DeclarationModel shard = shards.get(file);
+    if (shard == null) {
+      shard = new DeclarationModel();
+      shards.put(file, shard);
+      out = shard;
+      emitComment("generated by clutz.");
+      Path shardDir = Paths.get(getShardPath(file)).getParent();
+      String commonPath =
+          shardDir == null
+              ? COMMON_SHARD
+              : shardDir.relativize(Paths.get(COMMON_SHARD)).toString();
+      emitNoSpace("/// <reference path=\"" + commonPath.replace(File.separatorChar, '/') + "\"/>");
+      emitBreak();
+    }
+    return shard;
   }
 
   /**
@@ -701,8 +1366,11 @@ class DeclarationGenerator {
    * Closure does not require all types to be explicitly provided, if they are only used in type
    * positions. However, our emit phases only emits goog.provided symbols and namespaces, so this
    * extra pass is required, in order to have valid output.
+   *
+   * @param typesEmitted the unprovided types emitted so far, updated with the newly emitted ones.
    */
-  private void processUnprovidedTypes(Set<String> provides, Set<String> transitiveProvides) {
+  private void processUnprovidedTypes(
+      Set<String> provides, Set<String> transitiveProvides, Set<String> typesEmitted) {
     /**
      * A new set of types can be discovered while visiting unprovided types. To prevent an infinite
      * loop in a pathological case, limit to a number of passes.
@@ -711,16 +1379,17 @@ class DeclarationGenerator {
      * altogether.
      */
     int maxTypeUsedDepth = 5;
-    Set<String> typesEmitted = new LinkedHashSet<>();
     while (maxTypeUsedDepth > 0) {
-      int typesUsedCount = typesUsed.size();
-      // AFAICT, there is no api for going from type to symbol, so iterate all symbols first.
-      for (TypedVar symbol : compiler.getTopScope().getAllSymbols()) {
+      int typesUsedBefore = typesUsedCount;
+      // AFAICT, there is no api for going from type to symbol, so iterate all symbols first. Extern
+      // symbols have a separate pass and built-ins are skipped, so only symbols from sources are
+      // considered.
+      for (TypedVar symbol : topScopeIndex.getSourceSymbols()) {
         String name = symbol.getName();
         String namespace = getNamespace(name);
         // skip unused symbols, symbols already emitted or symbols whose namespace is emitted
         // (unless the symbols have their own provide).
-        if (!typesUsed.contains(name)
+        if (!isTypeUsed(name)
             || typesEmitted.contains(name)
             || (!transitiveProvides.contains(name) && typesEmitted.contains(namespace))) {
           continue;
@@ -737,11 +1406,6 @@ class DeclarationGenerator {
           continue;
         }
 
-        // Skip extern symbols (they have a separate pass) and skip built-ins.
-        // Built-ins can be indentified by having null as input file.
-        CompilerInput symbolInput = this.compiler.getInput(new InputId(symbol.getInputName()));
-        if (symbolInput == null || symbolInput.isExtern()) continue;
-
         if (shouldSkipVar(symbol)) {
           continue;
         }
@@ -767,7 +1431,7 @@ class DeclarationGenerator {
         typesEmitted.add(name);
       }
       // if no new types seen, safely break out.
-      if (typesUsed.size() == typesUsedCount) break;
+      if (typesUsedCount == typesUsedBefore) break;
       maxTypeUsedDepth--;
     }
   }
@@ -821,113 +1485,91 @@ class DeclarationGenerator {
 
   private void processExternSymbols() {
     Set<String> visitedClassLikes = new TreeSet<>();
-
-    List<TypedVar> externSymbols = new ArrayList<>();
-    TreeSet<String> externSymbolNames = new TreeSet<>();
-    final TreeSet<String> enumElementSymbols = new TreeSet<>();
-
-    for (TypedVar symbol : compiler.getTopScope().getAllSymbols()) {
-      CompilerInput symbolInput = compiler.getInput(new InputId(symbol.getInputName()));
-      if (symbolInput == null || !symbolInput.isExtern() || symbol.getType() == null) {
-        continue;
-      }
-      if (shouldAvoidGeneratingExterns(symbolInput.getName(), symbol.getName())) {
-        continue;
-      }
-      JSType type = symbol.getType();
-      // Closure treats all prototypes as separate symbols, but we handle them in conjunction with
-      // parent symbol.
-      if (symbol.getName().contains(".prototype")) continue;
-
-      // Sub-parts of namespaces in externs can appear as unknown if they miss a @const.
-      if (type.isUnknownType()) continue;
-
-      if (type.isEnumType()) {
-        EnumType eType = (EnumType) type;
-        for (String element : eType.getElements()) {
-          enumElementSymbols.add(symbol.getName() + "." + element);
-        }
-      }
-      externSymbols.add(symbol);
-      externSymbolNames.add(symbol.getName());
-    }
-
-    Iterator<TypedVar> it = externSymbols.iterator();
-
-    while (it.hasNext()) {
-      // Some extern symbols appear twice, once unprefixed, and once prefixed with window or this.
-      // Skip the second one, if both exist.
-      TypedVar symbol = it.next();
-      String originalName = symbol.getName();
-      String normalizedName = normalizeWindowGlobals(originalName);
-      if (!normalizedName.equals(originalName) && externSymbolNames.contains(normalizedName)) {
-        it.remove();
-        externSymbolNames.remove(originalName);
-      }
+    Set<String> shadowedSymbols = getShadowedProvides(topScopeIndex.getExternNames());
+    for (TypedVar symbol : topScopeIndex.getExterns()) {
+      declareExternSymbol(symbol, shadowedSymbols, visitedClassLikes);
     }
+  }
 
-    // Enum values like Enum.A will appear as stand-alone symbols, but we do not need to emit them.
-    externSymbolNames.removeAll(enumElementSymbols);
-    it = externSymbols.iterator();
-    while (it.hasNext()) {
-      if (enumElementSymbols.contains(it.next().getName())) {
-        it.remove();
-      }
-    }
+  /**
+   * Emits only the extern symbols that are reachable from the emitted declarations. Emitted externs
+   * can in turn use unprovided types of the sources, which are then declared as well, until no new
+   * type becomes used.
+   */
+  private void processReachableExternSymbols(
+      Set<String> provides, Set<String> transitiveProvides, Set<String> typesEmitted) {
+    Set<String> visitedExterns = new LinkedHashSet<>();
+    Set<String> visitedClassLikes = new TreeSet<>();
+    List<TypedVar> externSymbols = topScopeIndex.getExterns();
+    Set<String> shadowedSymbols = getShadowedProvides(topScopeIndex.getExternNames());
+    int typesUsedBefore;
+    do {
+      typesUsedBefore = typesUsedCount;
+      declareReachableExternSymbols(
+          externSymbols, shadowedSymbols, visitedExterns, visitedClassLikes);
+      processUnprovidedTypes(provides, transitiveProvides, typesEmitted);
+    } while (typesUsedCount != typesUsedBefore);
+  }
 
-    sortSymbols(externSymbols);
-    Set<String> shadowedSymbols = getShadowedProvides(externSymbolNames);
-    for (TypedVar symbol : externSymbols) {
-      String parentPath = getNamespace(symbol.getName());
-      boolean isDefault = isDefaultExport(symbol);
-      String emitName = symbol.getName();
-      if (needsAlias(shadowedSymbols, symbol.getName(), symbol)) {
-        emitName += Constants.COLLDING_PROVIDE_ALIAS_POSTFIX;
+  /**
+   * Emits the extern symbols that are referenced from the already emitted declarations, either
+   * directly or as the namespace of a referenced type, and that are not in visitedExterns yet.
+   * Emitting an extern can in turn reference more extern types, so this repeats until no new extern
+   * symbol becomes reachable.
+   */
+  private void declareReachableExternSymbols(
+      List<TypedVar> externSymbols,
+      Set<String> shadowedSymbols,
+      Set<String> visitedExterns,
+      Set<String> visitedClassLikes) {
+    int typesUsedBefore = -1;
+    while (typesUsedCount != typesUsedBefore) {
+      typesUsedBefore = typesUsedCount;
+      for (TypedVar symbol : externSymbols) {
+        String name = symbol.getName();
+        if (visitedExterns.contains(name) || !isReachableExtern(symbol)) {
+          continue;
+        }
+        visitedExterns.add(name);
+        declareExternSymbol(symbol, shadowedSymbols, visitedClassLikes);
       }
-
-      // There is nothing to emit for a namespace, because all its symbols will be visited later,
-      // thus implicitly defining the namespace.
-      if (isLikelyNamespace(symbol.getJSDocInfo())) continue;
-
-      // Do not emit static fields as symbols, since they were already emitted in the class
-      // definition.
-      if (!isDefiningType(symbol.getType()) && visitedClassLikes.contains(parentPath)) continue;
-
-      declareNamespace(
-          isDefault ? parentPath : symbol.getName(),
-          symbol,
-          emitName,
-          isDefault,
-          shadowedSymbols,
-          true);
-
-      if (isDefault && isClassLike(symbol.getType())) visitedClassLikes.add(symbol.getName());
-      // we do not declare modules or goog.require support, because externs types should not be
-      // visible from TS code.
     }
   }
 
-  private static final Ordering<TypedVar> BY_SOURCE_FILE =
-      Ordering.natural()
-          .onResultOf(
-              input -> {
-                if (input == null) return null;
-                return input.getInputName();
-              });
-
-  private static final Ordering<TypedVar> BY_VAR_NAME =
-      Ordering.natural()
-          .onResultOf(
-              input -> {
-                if (input == null) return null;
-                return input.getName();
-              });
+  private boolean isReachableExtern(TypedVar symbol) {
+    String name = symbol.getName();
+    String normalizedName = topScopeIndex.getNormalizedName(symbol);
+    return isTypeUsed(name) || isTypeUsed(normalizedName) || hasTypeUsedIn(normalizedName);
+  }
 
-  private static final Ordering<TypedVar> BY_SOURCE_FILE_AND_VAR_NAME =
-      BY_SOURCE_FILE.compound(BY_VAR_NAME);
+  private void declareExternSymbol(
+      TypedVar symbol, Set<String> shadowedSymbols, Set<String> visitedClassLikes) {
+    String parentPath = getNamespace(symbol.getName());
+    boolean isDefault = isDefaultExport(symbol);
+    String emitName = symbol.getName();
+    if (needsAlias(shadowedSymbols, symbol.getName(), symbol)) {
+      emitName += Constants.COLLDING_PROVIDE_ALIAS_POSTFIX;
+    }
 
-  private void sortSymbols(List<TypedVar> symbols) {
-    Collections.sort(symbols, BY_SOURCE_FILE_AND_VAR_NAME);
+    // There is nothing to emit for a namespace, because all its symbols will be visited later,
+    // thus implicitly defining the namespace.
+    if (isLikelyNamespace(symbol.getJSDocInfo())) return;
+
+    // Do not emit static fields as symbols, since they were already emitted in the class
+    // definition.
+    if (!isDefiningType(symbol.getType()) && visitedClassLikes.contains(parentPath)) return;
+
+    declareNamespace(
+        isDefault ? parentPath : symbol.getName(),
+        symbol,
+        emitName,
+        isDefault,
+        shadowedSymbols,
+        true);
+
+    if (isDefault && isClassLike(symbol.getType())) visitedClassLikes.add(symbol.getName());
+    // we do not declare modules or goog.require support, because externs types should not be
+    // visible from TS code.
   }
 
   private boolean needsAlias(Set<String> shadowedSymbols, String provide, TypedVar symbol) {
@@ -981,7 +1623,7 @@ class DeclarationGenerator {
 
     // If asked about a symbol like "window.Array", perform the below lookups on just
     // "Array".
-    symbolName = normalizeWindowGlobals(symbolName);
+    symbolName = TopScopeIndex.normalizeWindowGlobals(symbolName);
 
     // We're asked about e.g. "Array.from", which we should treat as a platform extern.
     // The PlatformSymbols lists just contain the toplevel name like "Array", so strip after
@@ -1003,15 +1645,6 @@ class DeclarationGenerator {
     return false;
   }
 
-  /**
-   * Strip window. or this. from full symbol names. Technically, window. and this. symbols are
-   * tracked separately in the type system from the global symbols, but they largely overlap both in
-   * TS and Closure.
-   */
-  private String normalizeWindowGlobals(String name) {
-    return name.replaceAll("^(window|this)\\.", "");
-  }
-
   /** See the comment above on shouldAvoidGeneratingExterns. */
   private boolean shouldAvoidGeneratingExterns(ObjectType type) {
     if (type.getConstructor() == null || type.getConstructor().getSource() == null) return false;
@@ -1041,6 +1674,7 @@ class DeclarationGenerator {
     } else {
       emitNamespaceBegin(namespace);
     }
+    out.setSymbol(symbol.getName());
     TreeWalker treeWalker =
         new TreeWalker(compiler.getTypeRegistry(), provides, isExtern, isGoogNamespace);
 
@@ -1058,8 +1692,6 @@ class DeclarationGenerator {
       // JSCompiler treats "foo.x" as one variable name, so collect all provides that start with
       // $provide + "." but are not sub-properties.
       Set<String> desiredSymbols = new TreeSet<>();
-      List<TypedVar> allSymbols = Lists.newArrayList(compiler.getTopScope().getAllSymbols());
-      sortSymbols(allSymbols);
 
       ObjectType objType = symbol.getType().toMaybeObjectType();
       // Can be null if the symbol is provided, but not defined.
@@ -1089,7 +1721,8 @@ class DeclarationGenerator {
         }
       }
 
-      for (TypedVar propertySymbol : allSymbols) {
+      // The desired symbols are all children of the symbol, so only those are iterated.
+      for (TypedVar propertySymbol : getChildSymbols(symbol.getName())) {
         String propertyName = propertySymbol.getName();
         if (desiredSymbols.contains(propertyName)
             && propertySymbol.getType() != null
@@ -1205,7 +1838,7 @@ class DeclarationGenerator {
     emit(emitName);
     emit(";");
     emitBreak();
-    typesUsed.add(alternativeAliasName);
+    addTypeUsed(alternativeAliasName);
   }
 
   // Ignoring Unicode symbols for now.
@@ -1282,6 +1915,9 @@ class DeclarationGenerator {
   }
 
   private void emitTopLevelNamespaceBegin(String namespace) {
+    if (indent == 0) {
+      out.beginNamespace(namespace);
+    }
     emitNoSpace("declare namespace ");
     emitNoSpace(namespace);
     emitNoSpace(" {");
@@ -1372,6 +2008,8 @@ class DeclarationGenerator {
       // goog:goog cannot be imported.
       return;
     }
+    // The module re-exports the namespace emitted just before, so it shares its source file.
+    out.beginBlock(DeclarationModel.Kind.MODULE, name, out.getSourceFile());
     emitNoSpace("declare module '");
     emitNoSpace("goog:" + name);
     emitNoSpace("' {");
@@ -1428,30 +2066,28 @@ class DeclarationGenerator {
 
   private void emitNoSpace(String str) {
     maybeEmitIndent();
-    out.write(str);
+    out.append(str);
   }
 
   private void emit(String str) {
     Preconditions.checkNotNull(str);
     if (!maybeEmitIndent()) {
-      out.write(" ");
+      out.append(" ");
     }
-    out.write(str);
+    out.append(str);
   }
 
   private boolean maybeEmitIndent() {
     if (!startOfLine) {
       return false;
     }
-    for (int i = 0; i < indent; i++) {
-      out.write("  ");
-    }
+    out.startLine(indent);
     startOfLine = false;
     return true;
   }
 
   private void emitBreak() {
-    out.write("\n");
+    out.endLine();
     startOfLine = true;
   }
 
@@ -1464,6 +2100,9 @@ class DeclarationGenerator {
    *     generated.
    */
   private void emitGeneratedFromFileComment(StaticSourceFile file) {
+    if (startOfLine && indent == 0) {
+      out.beginBlock(DeclarationModel.Kind.NAMESPACE, null, file == null ? null : file.getName());
+    }
     emit("// Generated from");
     String fileName = file == null ? "unknown file" : file.getName();
     emit(stripLineTerminators(fileName));
@@ -1658,7 +2297,7 @@ class DeclarationGenerator {
       emit(emitName);
       emit(";");
       emitBreak();
-      typesUsed.add(otype.getDisplayName());
+      addTypeUsed(otype.getDisplayName());
     }
 
     private void maybeEmitJsDoc(JSDocInfo docs, boolean ignoreParams) {
@@ -2071,7 +2710,7 @@ class DeclarationGenerator {
       String displayName = maybeRewriteImportedName(type.getDisplayName());
       String maybeGlobalName = maybeRenameGlobalType(displayName);
       if (maybeGlobalName == null) {
-        typesUsed.add(displayName);
+        addTypeUsed(displayName);
         displayName = Constants.INTERNAL_NAMESPACE + "." + displayName;
       } else {
         displayName = maybeGlobalName;
@@ -2136,7 +2775,7 @@ class DeclarationGenerator {
       if (!skipDefCheck && typedefs.containsKey(typeToVisit)) {
         String typedefName = typedefs.get(typeToVisit);
         emit(Constants.INTERNAL_NAMESPACE + "." + typedefName);
-        typesUsed.add(typedefName);
+        addTypeUsed(typedefName);
         return;
       }
       // See also JsdocToEs6TypedConverter in the Closure code base. This code is implementing the
@@ -2265,7 +2904,7 @@ class DeclarationGenerator {
             @Override
             public Void caseEnumElementType(EnumElementType type) {
               emit(getAbsoluteName(type));
-              typesUsed.add(type.getDisplayName());
+              addTypeUsed(type.getDisplayName());
               return null;
             }
 
@@ -2344,7 +2983,7 @@ class DeclarationGenerator {
         // In Closure, subtypes of `TemplatizedType`s that do not take type arguments are still
         // represented by templatized types.
         emit(templateTypeName);
-        typesUsed.add(displayName);
+        addTypeUsed(displayName);
         return null;
       }
       Iterator<JSType> it = type.getTemplateTypes().iterator();
@@ -2355,7 +2994,7 @@ class DeclarationGenerator {
         return null;
       }
       emit(templateTypeName);
-      typesUsed.add(displayName);
+      addTypeUsed(displayName);
       emitGenericTypeArguments(it);
       return null;
     }
@@ -2630,14 +3269,22 @@ class DeclarationGenerator {
      * that's the case so we must return true.
      */
     private boolean mustEmitConstructor(FunctionType type) {
-      while (type != null) {
-        if (type.getParameters().iterator().hasNext()) return true;
-        ObjectType oType = getSuperType(type);
-        if (oType == null) return false;
-        if (oType.isNoResolvedType()) return true;
-        type = oType.getConstructor();
+      if (type == null) return false;
+      Boolean cached = mustEmitConstructorCache.get(type);
+      if (cached != null) return cached;
+      boolean result;
+      ObjectType oType = getSuperType(type);
+      if (type.getParameters().iterator().hasNext()) {
+        result = true;
+      } else if (oType == null) {
+        result = false;
+      } else if (oType.isNoResolvedType()) {
+        result = true;
+      } else {
+        result = mustEmitConstructor(oType.getConstructor());
       }
-      return false;
+      mustEmitConstructorCache.put(type, result);
+      return result;
     }
 
     /**
@@ -2648,16 +3295,31 @@ class DeclarationGenerator {
       Set<ObjectType> interfaces = new LinkedHashSet<>();
 
       for (ObjectType implementedInterface : type.getOwnImplementedInterfaces()) {
-        addRelatedInterfaces(implementedInterface, interfaces);
+        interfaces.addAll(getRelatedInterfaces(implementedInterface));
       }
       return interfaces;
     }
 
+    /** Returns the interface itself followed by all interfaces it extends, depth first. */
+    private Set<ObjectType> getRelatedInterfaces(ObjectType instance) {
+      Set<ObjectType> cached = relatedInterfacesCache.get(instance);
+      if (cached != null) return cached;
+      Set<ObjectType> interfaces = new LinkedHashSet<>();
+      addRelatedInterfaces(instance, interfaces);
+      // Only cached once complete. Within a cyclic extends clause, which is invalid but still
+      // reported, the interfaces reached before the cycle closes would miss the rest of it.
+      relatedInterfacesCache.put(instance, interfaces);
+      return interfaces;
+    }
+
     private void addRelatedInterfaces(ObjectType instance, Set<ObjectType> interfaces) {
+      Set<ObjectType> cached = relatedInterfacesCache.get(instance);
+      if (cached != null) {
+        interfaces.addAll(cached);
+        return;
+      }
       FunctionType constructor = instance.getConstructor();
-      if (constructor != null && constructor.isInterface() && !interfaces.contains(instance)) {
-        interfaces.add(instance);
-
+      if (constructor != null && constructor.isInterface() && interfaces.add(instance)) {
         for (ObjectType interfaceType : instance.getCtorExtendedInterfaces()) {
           addRelatedInterfaces(interfaceType, interfaces);
         }
@@ -2719,6 +3381,44 @@ class DeclarationGenerator {
       JSType implemented;
       String returnType;
 
+      switch (getSymbolIteratorKind(instanceType)) {
+        case ITERABLE_ITERATOR:
+          implemented = iteratorIterableType;
+          returnType = "IterableIterator";
+          break;
+        case ITERATOR:
+          implemented = iterableType;
+          returnType = "Iterator";
+          break;
+        default:
+          return;
+      }
+      emitComment("Symbol.iterator inserted by Clutz for Iterable subtype");
+      emit("[Symbol.iterator](): ");
+      // The actual implementation of iterator could be an arbitrary subtype of Iterable. Emit
+      // the type of the interface as the next best thing.
+      emit(returnType);
+      emit("<");
+      TemplateType templateType = implemented.getTemplateTypeMap().getTemplateKeys().get(0);
+      TemplateTypeMap ttMap = instanceType.getTemplateTypeMap();
+      // Known issue: ttMap does not expose getUnresolvedTemplateType, which would be required
+      // to correctly emit unbound template parameters, e.g. "<T>".
+      JSType resolvedTemplateType = ttMap.getResolvedTemplateType(templateType);
+      visitType(resolvedTemplateType, false, false);
+      emit(">");
+      emit(";");
+      emitBreak();
+    }
+
+    private SymbolIteratorKind getSymbolIteratorKind(JSType instanceType) {
+      SymbolIteratorKind cached = symbolIteratorCache.get(instanceType);
+      if (cached != null) return cached;
+      SymbolIteratorKind kind = computeSymbolIteratorKind(instanceType);
+      symbolIteratorCache.put(instanceType, kind);
+      return kind;
+    }
+
+    private SymbolIteratorKind computeSymbolIteratorKind(JSType instanceType) {
       // Unfortunately, this method of detecting whether a class implements Iterator, is error-prone
       // in cases where the extension goes through another extends clause. Consider, C extends D,
       // and D implements Iterable.
@@ -2726,7 +3426,7 @@ class DeclarationGenerator {
       // Here we detect one such case - D being the always-present Array type and skip unnecessary
       // custom emit.
       if (instanceType.isSubtype(arrayType)) {
-        return;
+        return SymbolIteratorKind.NONE;
       }
 
       // It appears that iterableType is always defined. Moreover, in partial mode when extending
@@ -2740,31 +3440,13 @@ class DeclarationGenerator {
       // For unknown reasons instanceType.isInterface() return false, so we turn off the emit for
       // all partial input compilations.
       if (iteratorIterableType != null && instanceType.isSubtype(iteratorIterableType)) {
-        implemented = iteratorIterableType;
-        returnType = "IterableIterator";
+        return SymbolIteratorKind.ITERABLE_ITERATOR;
       } else if (iterableType != null
           && instanceType.isSubtype(iterableType)
           && !opts.partialInput) {
-        implemented = iterableType;
-        returnType = "Iterator";
-      } else {
-        return;
+        return SymbolIteratorKind.ITERATOR;
       }
-      emitComment("Symbol.iterator inserted by Clutz for Iterable subtype");
-      emit("[Symbol.iterator](): ");
-      // The actual implementation of iterator could be an arbitrary subtype of Iterable. Emit
-      // the type of the interface as the next best thing.
-      emit(returnType);
-      emit("<");
-      TemplateType templateType = implemented.getTemplateTypeMap().getTemplateKeys().get(0);
-      TemplateTypeMap ttMap = instanceType.getTemplateTypeMap();
-      // Known issue: ttMap does not expose getUnresolvedTemplateType, which would be required
-      // to correctly emit unbound template parameters, e.g. "<T>".
-      JSType resolvedTemplateType = ttMap.getResolvedTemplateType(templateType);
-      visitType(resolvedTemplateType, false, false);
-      emit(">");
-      emit(";");
-      emitBreak();
+      return SymbolIteratorKind.NONE;
     }
 
     /**
@@ -2772,14 +3454,18 @@ class DeclarationGenerator {
      * the given class.
      */
     private Set<String> getSuperClassFields(FunctionType ftype) {
+      Set<String> cached = superClassFieldsCache.get(ftype);
+      if (cached != null) return cached;
       Set<String> fields = new LinkedHashSet<>();
       ObjectType superType = getSuperType(ftype);
       // The UNKONWN type has a null constructor. One cannot extend UNKNOWN directly, but this
       // code can be reached when clutzing a non-closure-valid program.
-      while (superType != null && superType.getConstructor() != null) {
+      if (superType != null && superType.getConstructor() != null) {
         aggregateFieldsFromClass(fields, superType);
-        superType = getSuperType(superType.getConstructor());
+        fields.addAll(getSuperClassFields(superType.getConstructor()));
       }
+      fields = Collections.unmodifiableSet(fields);
+      superClassFieldsCache.put(ftype, fields);
       return fields;
     }
 
@@ -3297,10 +3983,11 @@ class DeclarationGenerator {
       // file, this is only useful for numeric enums and other enum types don't use the node object.
       Map<NamedTypePair, Node> innerProps = new TreeMap<>();
       // No type means the symbol is a typedef.
-      if (type.isNoType() && childListMap.containsKey(innerNamespace)) {
+      List<TypedVar> childSymbols = getChildSymbols(innerNamespace);
+      if (type.isNoType() && !childSymbols.isEmpty()) {
         // For typedefs, the inner symbols are not accessible as properties.
         // We iterate over all symbols to find possible inner symbols.
-        for (TypedVar symbol : childListMap.get(innerNamespace)) {
+        for (TypedVar symbol : childSymbols) {
           if (getNamespace(symbol.getName()).equals(innerNamespace)) {
             innerProps.put(
                 new NamedTypePair(symbol.getType(), getUnqualifiedName(symbol.getName())),
@@ -3309,7 +3996,7 @@ class DeclarationGenerator {
         }
       } else {
         Map<String, Node> nodes = new LinkedHashMap<>();
-        for (TypedVar symbol : childListMap.get(innerNamespace)) {
+        for (TypedVar symbol : childSymbols) {
           if (symbol.getName() != null && symbol.getNode() != null)
             nodes.put(symbol.getName(), symbol.getNode());
         }
@@ -3427,7 +4114,7 @@ class DeclarationGenerator {
         }
         emit(name);
         if (!type.getDisplayName().equals("Object")) {
-          typesUsed.add(type.getDisplayName());
+          addTypeUsed(type.getDisplayName());
         }
       } else {
         visitRecordType(type);
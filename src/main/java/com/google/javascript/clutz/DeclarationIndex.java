@@ -0,0 +1,64 @@
+package com.google.javascript.clutz;
+
+import com.google.gson.GsonBuilder;
+import com.google.javascript.clutz.DeclarationModel.Block;
+import com.google.javascript.clutz.DeclarationModel.Kind;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * The byte and line ranges of the top level blocks in a rendered .d.ts, written as a JSON sidecar
+ * with --emit_index, so that tools can seek to the declaration of a provide or namespace instead
+ * of scanning the whole file.
+ *
+ * <p>Byte ranges are offsets into the UTF-8 encoded file, end exclusive. Lines are 1-based and
+ * inclusive. The index is filled by {@link DeclarationRenderer} while rendering.
+ */
+final class DeclarationIndex {
+  static final String SUFFIX = ".index.json";
+
+  static final class Entry {
+    /** NAMESPACE for a {@code declare namespace} block, MODULE for a {@code declare module}. */
+    final Kind kind;
+    /** The namespace, or the provide of a {@code declare module 'goog:...'} block. */
+    final String name;
+    /** The Closure name of the symbol declared in a namespace block, if known. */
+    @Nullable final String symbol;
+    /** The JS file the declarations were generated from, if known. */
+    @Nullable final String sourceFile;
+
+    final long startByte;
+    final long endByte;
+    final int startLine;
+    final int endLine;
+
+    Entry(Block block, long startByte, long endByte, int startLine, int endLine) {
+      this.kind = block.kind;
+      this.name = block.name;
+      this.symbol = block.symbol;
+      this.sourceFile = block.sourceFile;
+      this.startByte = startByte;
+      this.endByte = endByte;
+      this.startLine = startLine;
+      this.endLine = endLine;
+    }
+  }
+
+  private final List<Entry> entries = new ArrayList<>();
+
+  /** Records the range of a rendered block. Blocks without a name, e.g. comments, are skipped. */
+  void add(Block block, long startByte, long endByte, int startLine, int endLine) {
+    if (block.kind != Kind.OTHER && block.name != null && endByte > startByte) {
+      entries.add(new Entry(block, startByte, endByte, startLine, endLine));
+    }
+  }
+
+  List<Entry> getEntries() {
+    return entries;
+  }
+
+  String toJson() {
+    return new GsonBuilder().disableHtmlEscaping().create().toJson(this);
+  }
+}
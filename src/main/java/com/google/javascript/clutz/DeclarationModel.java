@@ -0,0 +1,138 @@
+package com.google.javascript.clutz;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * The declarations emitted by {@link DeclarationGenerator}, as a list of top level blocks of
+ * indented lines, between walking the Closure types and rendering the .d.ts text with {@link
+ * DeclarationRenderer}.
+ *
+ * <p>A block is one top level {@code declare namespace} or {@code declare module} together with
+ * the comments preceding it, and knows the provide or namespace it declares and the source file it
+ * was generated from. Lines only store their indentation depth and text, so blocks can be rendered
+ * independently of each other and in any number of threads.
+ */
+final class DeclarationModel {
+  enum Kind {
+    /** Comments and other lines that are not part of a declaration, e.g. the file header. */
+    OTHER,
+    /** A {@code declare namespace} block, named by its namespace. */
+    NAMESPACE,
+    /** A {@code declare module 'goog:...'} block, named by its provide. */
+    MODULE
+  }
+
+  /** A line of text, without its indentation or line break. */
+  static final class Line {
+    /** Depth of indentation, or -1 for an empty line without indentation. */
+    final int depth;
+
+    final String text;
+    /** False only for a last line that was not terminated. */
+    final boolean lineBreak;
+
+    Line(int depth, String text, boolean lineBreak) {
+      this.depth = depth;
+      this.text = text;
+      this.lineBreak = lineBreak;
+    }
+  }
+
+  static final class Block {
+    final Kind kind;
+    @Nullable String name;
+    @Nullable final String sourceFile;
+    /** The Closure name of the symbol declared by a namespace block, if known. */
+    @Nullable String symbol;
+    final List<Line> lines = new ArrayList<>();
+
+    Block(Kind kind, @Nullable String name, @Nullable String sourceFile) {
+      this.kind = kind;
+      this.name = name;
+      this.sourceFile = sourceFile;
+    }
+  }
+
+  private final List<Block> blocks = new ArrayList<>();
+  private Block current = new Block(Kind.OTHER, null, null);
+
+  private final StringBuilder lineText = new StringBuilder();
+  private int lineDepth = 0;
+  private boolean inLine = false;
+
+  DeclarationModel() {
+    blocks.add(current);
+  }
+
+  /** Starts a new top level block, which receives all following lines. */
+  void beginBlock(Kind kind, @Nullable String name, @Nullable String sourceFile) {
+    checkState(!inLine, "blocks must begin at the start of a line");
+    if (current.lines.isEmpty() && current.kind == Kind.OTHER && current.name == null) {
+      // Nothing was emitted since the last block began, so it is replaced.
+      blocks.remove(blocks.size() - 1);
+    }
+    current = new Block(kind, name, sourceFile);
+    blocks.add(current);
+  }
+
+  /**
+   * Records that a top level namespace declaration begins. It belongs to the current block if that
+   * was started for a namespace whose name was not known yet, e.g. by a "Generated from" comment.
+   * Otherwise it starts a new block, from the same source file as the current one.
+   */
+  void beginNamespace(String namespace) {
+    if (current.kind == Kind.NAMESPACE && current.name == null) {
+      current.name = namespace;
+    } else {
+      beginBlock(Kind.NAMESPACE, namespace, current.sourceFile);
+    }
+  }
+
+  /** Records the symbol declared by the current namespace block, unless one was already. */
+  void setSymbol(String symbol) {
+    if (current.kind == Kind.NAMESPACE && current.symbol == null) {
+      current.symbol = symbol;
+    }
+  }
+
+  @Nullable
+  String getSourceFile() {
+    return current.sourceFile;
+  }
+
+  /** Starts a line at the given depth of indentation. */
+  void startLine(int depth) {
+    checkState(!inLine, "line already started");
+    lineDepth = depth;
+    inLine = true;
+  }
+
+  void append(String text) {
+    checkState(inLine, "text must be appended to a started line");
+    lineText.append(text);
+  }
+
+  /** Ends the current line. If no line was started, adds an empty line without indentation. */
+  void endLine() {
+    current.lines.add(new Line(inLine ? lineDepth : -1, lineText.toString(), true));
+    lineText.setLength(0);
+    inLine = false;
+  }
+
+  /** Adds a started, but unterminated last line. Must be called before the model is read. */
+  void finish() {
+    if (inLine) {
+      current.lines.add(new Line(lineDepth, lineText.toString(), false));
+      lineText.setLength(0);
+      inLine = false;
+    }
+  }
+
+  List<Block> getBlocks() {
+    return blocks;
+  }
+}
@@ -0,0 +1,229 @@
+package com.google.javascript.clutz;
+
+import com.google.common.base.CharMatcher;
+import com.google.javascript.clutz.DeclarationModel.Block;
+import com.google.javascript.clutz.DeclarationModel.Line;
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+/**
+ * Renders a {@link DeclarationModel} as .d.ts text. Rendering is a single pass over the lines and
+ * keeps no state between blocks, so it is safe to render many models or blocks concurrently.
+ */
+final class DeclarationRenderer {
+  private static final String INDENT = "  ";
+
+  private DeclarationRenderer() {}
+
+  static String render(DeclarationModel model) {
+    return render(model, null, false);
+  }
+
+  /**
+   * Renders the model, and records the range of each block in the index if it is not null. With
+   * compact, the output has no comments, indentation or optional whitespace, see {@link Compactor}.
+   */
+  static String render(DeclarationModel model, @Nullable DeclarationIndex index, boolean compact) {
+    StringBuilder sb = new StringBuilder();
+    try {
+      render(model, index, compact, sb);
+    } catch (IOException e) {
+      throw new AssertionError("StringBuilder does not throw", e);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Like {@link #render(DeclarationModel, DeclarationIndex, boolean)}, but appends the output to
+   * out block by block, so that only the text of one block is held in memory.
+   */
+  static void render(
+      DeclarationModel model, @Nullable DeclarationIndex index, boolean compact, Appendable out)
+      throws IOException {
+    model.finish();
+    StringBuilder sb = new StringBuilder();
+    long bytes = 0;
+    int lines = 0;
+    for (Block block : model.getBlocks()) {
+      sb.setLength(0);
+      if (compact) {
+        // Comments never span blocks, so each block can be compacted on its own.
+        new Compactor().renderBlock(block, sb);
+      } else {
+        renderBlock(block, sb);
+      }
+      out.append(sb);
+      if (index == null) {
+        continue;
+      }
+      long blockBytes = utf8Length(sb, 0, sb.length());
+      int blockLines = 0;
+      for (int i = 0; i < sb.length(); i++) {
+        if (sb.charAt(i) == '\n') {
+          blockLines++;
+        }
+      }
+      boolean unterminated = sb.length() > 0 && sb.charAt(sb.length() - 1) != '\n';
+      index.add(
+          block,
+          bytes,
+          bytes + blockBytes,
+          lines + 1,
+          lines + blockLines + (unterminated ? 1 : 0));
+      bytes += blockBytes;
+      lines += blockLines;
+    }
+  }
+
+  static void renderBlock(Block block, StringBuilder sb) {
+    for (Line line : block.lines) {
+      for (int i = 0; i < line.depth; i++) {
+        sb.append(INDENT);
+      }
+      sb.append(line.text);
+      if (line.lineBreak) {
+        sb.append('\n');
+      }
+    }
+  }
+
+  /**
+   * Renders a block for --compact output: comments, indentation and whitespace next to punctuation
+   * are dropped, and lines are joined where a line break is not needed to separate tokens, e.g.
+   * after a semicolon or brace. A {@code declare module 'goog:...'} block becomes a single line.
+   *
+   * <p>Only the "generated by clutz" header, which tsickle looks for, and triple-slash directives
+   * are kept as comments. String and template literals are not changed. The line breaks and
+   * indentation within a literal that spans lines are kept.
+   */
+  private static final class Compactor {
+    /** See DeclarationGenerator#produceModel. */
+    private static final String HEADER = "//!! generated by clutz.";
+
+    private static final CharMatcher PUNCTUATION = CharMatcher.anyOf(":;,(){}[]<>=|&?");
+    private static final CharMatcher JOINS_NEXT_LINE = CharMatcher.anyOf(";{},");
+    private static final CharMatcher WHITESPACE = CharMatcher.anyOf(" \t");
+
+    private final StringBuilder line = new StringBuilder();
+    private boolean inBlockComment = false;
+    private boolean endsWithLineComment = false;
+    /** The quote of the literal the text is in, or 0. */
+    private char quote = 0;
+
+    void renderBlock(Block block, StringBuilder sb) {
+      int start = sb.length();
+      for (Line l : block.lines) {
+        line.setLength(0);
+        boolean inLiteral = quote != 0;
+        if (inLiteral) {
+          // The line continues a literal, which is rendered as without --compact.
+          for (int i = 0; i < l.depth; i++) {
+            line.append(INDENT);
+          }
+        }
+        boolean lineComment = compactLine(l.text);
+        if (line.length() == 0 && !inLiteral) {
+          continue;
+        }
+        if (sb.length() > start) {
+          char last = sb.charAt(sb.length() - 1);
+          if (inLiteral
+              || endsWithLineComment
+              || !(JOINS_NEXT_LINE.matches(last) || line.charAt(0) == '}')) {
+            sb.append('\n');
+          }
+        }
+        sb.append(line);
+        endsWithLineComment = lineComment;
+      }
+      if (sb.length() > start) {
+        sb.append('\n');
+      }
+    }
+
+    /** Appends the compacted text to the line, and returns if it ends with a kept comment. */
+    private boolean compactLine(String text) {
+      boolean lineComment = false;
+      for (int i = 0; i < text.length(); i++) {
+        char c = text.charAt(i);
+        char next = i + 1 < text.length() ? text.charAt(i + 1) : 0;
+        if (inBlockComment) {
+          if (c == '*' && next == '/') {
+            inBlockComment = false;
+            i++;
+          }
+        } else if (quote != 0) {
+          line.append(c);
+          if (c == '\\' && next != 0) {
+            line.append(next);
+            i++;
+          } else if (c == quote) {
+            quote = 0;
+          }
+        } else if (c == '/' && next == '*') {
+          inBlockComment = true;
+          i++;
+        } else if (c == '/' && next == '/') {
+          String comment = text.substring(i);
+          if (comment.startsWith("///") || comment.equals(HEADER)) {
+            line.append(comment);
+            lineComment = true;
+          }
+          break;
+        } else if (WHITESPACE.matches(c)) {
+          while (i + 1 < text.length() && WHITESPACE.matches(text.charAt(i + 1))) {
+            i++;
+          }
+          if (needsSpace(i + 1 < text.length() ? text.charAt(i + 1) : 0)) {
+            line.append(' ');
+          }
+        } else {
+          if (c == '\'' || c == '"' || c == '`') {
+            quote = c;
+          }
+          line.append(c);
+        }
+      }
+      // A comment may have followed the last space.
+      while (quote == 0 && line.length() > 0 && line.charAt(line.length() - 1) == ' ') {
+        line.setLength(line.length() - 1);
+      }
+      return lineComment;
+    }
+
+    /** Whether a space is needed between the text so far and the next character. */
+    private boolean needsSpace(char next) {
+      if (line.length() == 0 || next == 0) {
+        return false;
+      }
+      char last = line.charAt(line.length() - 1);
+      return last != ' ' && !PUNCTUATION.matches(last) && !PUNCTUATION.matches(next);
+    }
+  }
+
+  /**
+   * Returns the length of the text in UTF-8. Unlike Guava's Utf8.encodedLength this accepts
+   * unpaired surrogates, which String.getBytes encodes as a single '?'.
+   */
+  private static long utf8Length(CharSequence text, int start, int end) {
+    long length = 0;
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < end
+          && Character.isLowSurrogate(text.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else if (Character.isSurrogate(c)) {
+        length++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+}
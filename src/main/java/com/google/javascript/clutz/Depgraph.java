@@ -36,6 +36,10 @@ class Depgraph {
    * out of the depgraph, and later passed to ImportBasedMapBuilder to resolve the ambiguity.
    */
   private final Set<String> googProvides = new HashSet<>();
+  /** goog.provide and goog.module symbols of all root files. */
+  private final Set<String> rootProvides = new LinkedHashSet<>();
+  /** Root files that are ES6 modules, which have no provides. */
+  private final Set<String> rootEs6Modules = new LinkedHashSet<>();
 
   private Depgraph() {}
 
@@ -73,6 +77,14 @@ class Depgraph {
     return Collections.unmodifiableSet(googProvides);
   }
 
+  Set<String> getRootProvides() {
+    return Collections.unmodifiableSet(rootProvides);
+  }
+
+  Set<String> getRootEs6Modules() {
+    return Collections.unmodifiableSet(rootEs6Modules);
+  }
+
   static Depgraph forRoots(Set<String> roots, Set<String> nonroots) {
     Depgraph result = new Depgraph();
     result.roots.addAll(roots);
@@ -130,6 +142,7 @@ class Depgraph {
       List<List<?>> fileProperties = (List<List<?>>) rootDescriptor.get(1);
       boolean isExterns = false;
       boolean isGoogProvide = true;
+      boolean isEs6Module = false;
       List<String> provides = new ArrayList<>();
       for (List<?> tuple : fileProperties) {
         String key = (String) tuple.get(0);
@@ -144,6 +157,10 @@ class Depgraph {
           if (loadFlags.contains(ImmutableList.of("module", "goog"))) {
             isGoogProvide = false;
           }
+          if (loadFlags.contains(ImmutableList.of("module", "es6"))) {
+            isGoogProvide = false;
+            isEs6Module = true;
+          }
         }
         if ("provides".equals(key)) {
           // provides is a list of strings, where the first element is the file name with a prefix
@@ -162,6 +179,10 @@ class Depgraph {
         nonrootExterns.add(fileName);
       } else if (isRoots) {
         roots.add(fileName);
+        rootProvides.addAll(provides);
+        if (isEs6Module) {
+          rootEs6Modules.add(fileName);
+        }
       } else {
         nonroots.add(fileName);
       }
@@ -0,0 +1,84 @@
+package com.google.javascript.clutz;
+
+import com.google.javascript.jscomp.NodeUtil;
+import com.google.javascript.rhino.JSDocInfo;
+import com.google.javascript.rhino.Node;
+
+/**
+ * Empties the bodies of functions that cannot influence the declared types, so that type inference
+ * skips them. Clutz only emits declarations, and in application code function bodies are the vast
+ * majority of the AST.
+ *
+ * <p>A body is kept when:
+ *
+ * <ul>
+ *   <li>the function is a constructor or interface (including ES6 class and goog.defineClass
+ *       constructors), as their bodies declare the instance fields.
+ *   <li>the function is called or passed to a call, e.g. goog.scope, goog.loadModule or an IIFE,
+ *       as their bodies contain top level declarations.
+ *   <li>the body contains JSDoc or assigns to a property, e.g. {@code this.x = ...} in a method or
+ *       {@code ns.Foo = ...} in an initializer, which declare or infer properties.
+ *   <li>the function has no declared return type, but returns a value or throws, as the inferred
+ *       return type would change from unknown to void.
+ * </ul>
+ */
+class FunctionBodyPruner {
+  private int prunedCount = 0;
+
+  /** Prunes all function bodies under the given root and returns how many were emptied. */
+  int prune(Node root) {
+    visit(root);
+    return prunedCount;
+  }
+
+  private void visit(Node n) {
+    if (n.isFunction() && canPrune(n)) {
+      NodeUtil.getFunctionBody(n).detachChildren();
+      prunedCount++;
+      return;
+    }
+    for (Node child = n.getFirstChild(); child != null; child = child.getNext()) {
+      visit(child);
+    }
+  }
+
+  private static boolean canPrune(Node function) {
+    Node body = NodeUtil.getFunctionBody(function);
+    if (!body.isBlock() || !body.hasChildren()) {
+      return false;
+    }
+    JSDocInfo jsdoc = NodeUtil.getBestJSDocInfo(function);
+    if (jsdoc != null && jsdoc.isConstructorOrInterface()) {
+      return false;
+    }
+    Node parent = function.getParent();
+    if ((parent.isMemberFunctionDef() || parent.isStringKey())
+        && parent.getString().equals("constructor")) {
+      return false;
+    }
+    if (parent.isCall() || parent.isNew()) {
+      return false;
+    }
+    boolean hasReturnType = jsdoc != null && jsdoc.hasReturnType();
+    return !mayInfluenceTypes(body, hasReturnType);
+  }
+
+  private static boolean mayInfluenceTypes(Node n, boolean hasReturnType) {
+    if (n.getJSDocInfo() != null) {
+      return true;
+    }
+    if (n.isAssign() && (n.getFirstChild().isGetProp() || n.getFirstChild().isGetElem())) {
+      return true;
+    }
+    if (!hasReturnType && ((n.isReturn() && n.hasChildren()) || n.isThrow())) {
+      return true;
+    }
+    for (Node child = n.getFirstChild(); child != null; child = child.getNext()) {
+      // Returns of nested functions do not matter, but their property assignments still do.
+      if (mayInfluenceTypes(child, hasReturnType || child.isFunction())) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
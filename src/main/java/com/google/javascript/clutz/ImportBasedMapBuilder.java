@@ -5,33 +5,36 @@ import java.util.*;
 
 /**
  * ImportBasedMapBuilder is a base class for walking the closure AST and gathering information about
- * imports and exports that the closure compiler doesn't give access to in incremental mode.
+ * imports and exports that the closure compiler doesn't give access to in incremental mode. The
+ * AST is only walked once per input, to extract its {@link InputFacts}, and the maps are built
+ * from those.
  */
 public abstract class ImportBasedMapBuilder {
+  /**
+   * Builds the map entries of one goog.module body, or of one top level goog.scope block if {@code
+   * scope.moduleId} is null.
+   */
   protected abstract Map<String, String> build(
-      String localModuleId, Node moduleBody, Set<String> googProvides);
+      InputFacts.Scope scope, InputFacts input, Set<String> googProvides);
 
   /**
    * Build takes a collection of parsed inputs and walks the ast to find any imports into local
    * variables to build a map based on the concrete class's implementation of build.
    */
   public Map<String, String> build(Collection<Node> parsedInputs, Set<String> googProvides) {
-    Map<String, String> importRenameMap = new LinkedHashMap<>();
+    List<InputFacts> inputs = new ArrayList<>();
     for (Node ast : parsedInputs) {
-      // Symbols can be imported into a variable in a goog.module() file, so look for imports in the
-      // body of the goog module.
-      String moduleId = getGoogModuleId(ast);
-      if (moduleId != null) {
-        importRenameMap.putAll(build(moduleId, ast.getFirstChild(), googProvides));
-      }
+      inputs.add(InputFacts.extract(ast));
+    }
+    return buildFromFacts(inputs, googProvides);
+  }
 
-      // Or symbols can be imported into a variable in a top-level goog.scope() block, so look for
-      // imports in the bodies of any goog scopes.
-      List<Node> googScopes = getTopLevelGoogScopes(ast);
-      if (!googScopes.isEmpty()) {
-        for (Node googScope : googScopes) {
-          importRenameMap.putAll(build(null, googScope, googProvides));
-        }
+  /** Like {@link #build(Collection, Set)}, but from the facts extracted from the inputs. */
+  Map<String, String> buildFromFacts(Collection<InputFacts> inputs, Set<String> googProvides) {
+    Map<String, String> importRenameMap = new LinkedHashMap<>();
+    for (InputFacts input : inputs) {
+      for (InputFacts.Scope scope : input.scopes) {
+        importRenameMap.putAll(build(scope, input, googProvides));
       }
     }
     return importRenameMap;
@@ -139,7 +142,7 @@ public abstract class ImportBasedMapBuilder {
   }
 
   /** Matches `exports = foo;` */
-  protected boolean isWholeModuleExportAssignment(Node statement) {
+  protected static boolean isWholeModuleExportAssignment(Node statement) {
     if (!statement.isExprResult()) {
       return false;
     }
@@ -160,7 +163,7 @@ public abstract class ImportBasedMapBuilder {
   }
 
   /** Matches `exports = {foo, bar};` */
-  protected boolean isObjectLiteralExport(Node statement) {
+  protected static boolean isObjectLiteralExport(Node statement) {
     if (!statement.isExprResult()) {
       return false;
     }
@@ -181,7 +184,7 @@ public abstract class ImportBasedMapBuilder {
   }
 
   /** Matches `exports.foo = foo;` */
-  protected boolean isNamedExportAssignment(Node statement) {
+  protected static boolean isNamedExportAssignment(Node statement) {
     if (!statement.isExprResult()) {
       return false;
     }
@@ -206,7 +209,7 @@ public abstract class ImportBasedMapBuilder {
   }
 
   /** Matches `exports.foo = foo.bar;` */
-  protected boolean isNamedExportPropAssignment(Node statement) {
+  protected static boolean isNamedExportPropAssignment(Node statement) {
     if (!statement.isExprResult()) {
       return false;
     }
@@ -234,27 +237,42 @@ public abstract class ImportBasedMapBuilder {
     return statement.getFirstChild().getFirstChild().getFirstChild().getString().equals("exports");
   }
 
+  /** Matches `goog.module.declareLegacyNamespace();` */
+  protected static boolean isDeclareLegacyNamespaceStatement(Node statement) {
+    if (!statement.isExprResult()) {
+      return false;
+    }
+
+    if (!statement.getFirstChild().isCall()) {
+      return false;
+    }
+
+    Node callBody = statement.getFirstFirstChild();
+
+    return callBody.matchesQualifiedName("goog.module.declareLegacyNamespace");
+  }
+
   /** Returns `foo` from 'exports.foo = bar` */
-  protected String getNamedExportName(Node statement) {
+  protected static String getNamedExportName(Node statement) {
     return statement.getFirstChild().getFirstChild().getChildAtIndex(1).getString();
   }
 
   /** Returns `foo` from `exports = foo` or `exports.foo = foo` */
-  protected String getExportsAssignmentRHS(Node statement) {
+  protected static String getExportsAssignmentRHS(Node statement) {
     return statement.getFirstChild().getSecondChild().getString();
   }
 
   /** Returns `foo` from `exports = foo.bar` or `exports.foo = foo.bar` */
-  protected String getExportsAssignmentPropRootName(Node statement) {
+  protected static String getExportsAssignmentPropRootName(Node statement) {
     return statement.getFirstChild().getSecondChild().getFirstChild().getString();
   }
 
   /** Returns `bar` from `exports = foo.bar` or `exports.foo = foo.bar` */
-  protected String getExportsAssignmentPropName(Node statement) {
+  protected static String getExportsAssignmentPropName(Node statement) {
     return statement.getFirstChild().getSecondChild().getSecondChild().getString();
   }
 
-  protected Map<String, String> objectLiteralASTToStringMap(Node objectLiteral) {
+  protected static Map<String, String> objectLiteralASTToStringMap(Node objectLiteral) {
     Map<String, String> stringMap = new LinkedHashMap<>();
     for (Node objectMember : objectLiteral.children()) {
       String originalName = objectMember.getString();
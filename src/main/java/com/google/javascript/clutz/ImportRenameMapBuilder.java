@@ -1,6 +1,5 @@
 package com.google.javascript.clutz;
 
-import com.google.javascript.rhino.Node;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -16,23 +15,24 @@ import java.util.Set;
 public class ImportRenameMapBuilder extends ImportBasedMapBuilder {
 
   /**
-   * Build does the actual work of walking over the AST, finding any goog.require() or
-   * goog.module.get() assignments or destructuring assignments, parsing them, and generating the
-   * mappings from local symbol names to exported symbol names. If the imported module's id is in
-   * googProvides, emit a rename in goog.provide style, otherwise, use goog.module style.
+   * Build does the actual work of going over the goog.require() or goog.module.get() assignments or
+   * destructuring assignments of the scope and generating the mappings from local symbol names to
+   * exported symbol names. If the imported module's id is in googProvides, emit a rename in
+   * goog.provide style, otherwise, use goog.module style.
    */
   @Override
   protected Map<String, String> build(
-      String localModuleId, Node moduleBody, Set<String> googProvides) {
+      InputFacts.Scope scope, InputFacts input, Set<String> googProvides) {
+    String localModuleId = scope.moduleId;
     Map<String, String> importRenameMap = new LinkedHashMap<>();
 
-    for (Node statement : moduleBody.children()) {
+    for (InputFacts.Statement statement : scope.statements) {
       // Here and below goog.require and goog.requireType are treated identically.
-      if (isImportAssignment(statement)) {
+      if (statement.kind == InputFacts.StatementKind.IMPORT) {
         // `const C = goog.require()` or
         // `const C = goog.module.get()`
-        String importedModuleId = statement.getFirstFirstChild().getChildAtIndex(1).getString();
-        String variableName = statement.getFirstChild().getString();
+        String importedModuleId = statement.target;
+        String variableName = statement.name;
 
         String exportedSymbolName;
         if (!googProvides.contains(importedModuleId)) {
@@ -46,13 +46,11 @@ public class ImportRenameMapBuilder extends ImportBasedMapBuilder {
           String localSymbolName = buildLocalSymbolName(localModuleId, variableName);
           importRenameMap.put(localSymbolName, exportedSymbolName);
         }
-      } else if (isImportDestructuringAssignment(statement)) {
+      } else if (statement.kind == InputFacts.StatementKind.DESTRUCTURING_IMPORT) {
         // `const {C, Clazz: RenamedClazz} = goog.require()` or
         // `const {C, Clazz: RenamedClazz} = goog.module.get()`
-        String importedModuleId =
-            statement.getFirstChild().getChildAtIndex(1).getChildAtIndex(1).getString();
-        for (Entry<String, String> e :
-            objectLiteralASTToStringMap(statement.getFirstFirstChild()).entrySet()) {
+        String importedModuleId = statement.target;
+        for (Entry<String, String> e : statement.bindings.entrySet()) {
           String originalName = e.getKey();
           // Destructuring can use the original name `const {A} = goog.require("foo.a")` or rename
           // it `const {A: RenamedA} = ...`, and closure uses whichever in the symbol name it
@@ -73,14 +71,13 @@ public class ImportRenameMapBuilder extends ImportBasedMapBuilder {
             importRenameMap.put(localSymbolName, exportedSymbolName);
           }
         }
-      } else if (isVariableDestructuringAssignment(statement)) {
+      } else if (statement.kind == InputFacts.StatementKind.VARIABLE_DESTRUCTURING) {
         // `const B = goog.require()`
         // `const {C, Clazz: RenamedClazz} = B`
         // On separate lines
-        String destructuredVariable = statement.getFirstChild().getChildAtIndex(1).getString();
+        String destructuredVariable = statement.target;
 
-        for (Entry<String, String> e :
-            objectLiteralASTToStringMap(statement.getFirstFirstChild()).entrySet()) {
+        for (Entry<String, String> e : statement.bindings.entrySet()) {
           String originalName = e.getKey();
           // Destructuring can use the original name `const {A} = goog.require("foo.a")` or rename
           // it `const {A: RenamedA} = ...`, and closure uses whichever in the symbol name it
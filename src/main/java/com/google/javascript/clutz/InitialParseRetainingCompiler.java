@@ -10,6 +10,7 @@ import com.google.javascript.jscomp.SourceFile;
 import com.google.javascript.rhino.Node;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Predicate;
 
 /**
  * InitialParseRetainingCompiler clones a copy of the AST of the inputs before any of the compiler
@@ -17,6 +18,29 @@ import java.util.List;
  */
 public class InitialParseRetainingCompiler extends Compiler {
   private List<Node> parsedInputs = new ArrayList<>();
+  private Predicate<String> retainParsedInput = fileName -> true;
+  private boolean skipFunctionBodies = false;
+  private int prunedFunctionBodies = 0;
+
+  /**
+   * Which of the parsed inputs to clone, by file name. {@link #getParsedInputs} only contains the
+   * clones of these, the others do not take up memory during compilation.
+   */
+  public void setRetainParsedInputs(Predicate<String> retainParsedInput) {
+    this.retainParsedInput = retainParsedInput;
+  }
+
+  /**
+   * Whether to prune function bodies that do not influence declared types before type checking.
+   * The retained parsed inputs always contain the full bodies.
+   */
+  public void setSkipFunctionBodies(boolean skipFunctionBodies) {
+    this.skipFunctionBodies = skipFunctionBodies;
+  }
+
+  public int getPrunedFunctionBodies() {
+    return prunedFunctionBodies;
+  }
 
   /**
    * Copied verbatim from com.google.javascript.jscomp.Compiler, except using getter methods instead
@@ -33,6 +57,9 @@ public class InitialParseRetainingCompiler extends Compiler {
       if (!hasErrors()) {
         parseForCompilation();
         cloneParsedInputs();
+        if (skipFunctionBodies) {
+          pruneFunctionBodies();
+        }
       }
       if (!hasErrors()) {
         if (options.getInstrumentForCoverageOnly()) {
@@ -53,15 +80,31 @@ public class InitialParseRetainingCompiler extends Compiler {
     return getResult();
   }
 
-  /** Loop over all the inputs and clone their ASTs into this.parsedInputs. */
+  /** Loop over all the retained inputs and clone their ASTs into this.parsedInputs. */
   private void cloneParsedInputs() {
     for (CompilerInput ci : getInputsById().values()) {
+      if (!retainParsedInput.test(ci.getName())) {
+        continue;
+      }
       Node n = ci.getAstRoot(this);
       parsedInputs.add(n.cloneTree());
     }
   }
 
+  private void pruneFunctionBodies() {
+    for (CompilerInput ci : getInputsById().values()) {
+      if (!ci.isExtern()) {
+        prunedFunctionBodies += new FunctionBodyPruner().prune(ci.getAstRoot(this));
+      }
+    }
+  }
+
   public List<Node> getParsedInputs() {
     return parsedInputs;
   }
+
+  /** Drops the parsed inputs, once their last consumer has run, so they can be collected. */
+  public void releaseParsedInputs() {
+    parsedInputs = new ArrayList<>();
+  }
 }
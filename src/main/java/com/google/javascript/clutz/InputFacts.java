@@ -0,0 +1,228 @@
+package com.google.javascript.clutz;
+
+import com.google.javascript.rhino.Node;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * The facts about one input file that the {@link ImportBasedMapBuilder}s need: whether it declares
+ * a legacy namespace, and the import and export statements of its goog.module body and top level
+ * goog.scope blocks.
+ *
+ * <p>The facts only depend on the content of the file, so they are extracted once from the parsed
+ * AST and cached by content hash in the --facts_cache_dir, see {@link InputFactsCache}.
+ */
+final class InputFacts {
+  enum StatementKind {
+    /** {@code const C = goog.require('a.c')}, or goog.module.get, forwardDeclare, requireType. */
+    IMPORT,
+    /** {@code const {C, D: E} = goog.require('a.b')}, or goog.module.get. */
+    DESTRUCTURING_IMPORT,
+    /** {@code const {C, D: E} = B} */
+    VARIABLE_DESTRUCTURING,
+    /** {@code exports = foo} */
+    EXPORT,
+    /** {@code exports = {foo, bar: baz}} */
+    OBJECT_LITERAL_EXPORT,
+    /** {@code exports.foo = bar} */
+    NAMED_EXPORT,
+    /** {@code exports.foo = bar.baz} */
+    NAMED_PROP_EXPORT
+  }
+
+  /** An import or export statement, see {@link StatementKind} for the recognized forms. */
+  static final class Statement {
+    final StatementKind kind;
+    /**
+     * The imported module of imports, the destructured variable, or the exported local variable
+     * ({@code bar} of {@code bar.baz}). Null for object literal exports.
+     */
+    @Nullable final String target;
+    /** The local variable of an IMPORT, or the exported name of named exports. */
+    @Nullable final String name;
+    /** {@code baz} of a NAMED_PROP_EXPORT. */
+    @Nullable final String property;
+    /** Original to local names of destructuring, or exported to local names of object literals. */
+    final Map<String, String> bindings;
+
+    Statement(
+        StatementKind kind,
+        @Nullable String target,
+        @Nullable String name,
+        @Nullable String property,
+        Map<String, String> bindings) {
+      this.kind = kind;
+      this.target = target;
+      this.name = name;
+      this.property = property;
+      this.bindings = Collections.unmodifiableMap(bindings);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Statement)) {
+        return false;
+      }
+      Statement other = (Statement) o;
+      return kind == other.kind
+          && Objects.equals(target, other.target)
+          && Objects.equals(name, other.name)
+          && Objects.equals(property, other.property)
+          && bindings.equals(other.bindings);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(kind, target, name, property, bindings);
+    }
+  }
+
+  /** The statements of a goog.module body, or of a top level goog.scope block. */
+  static final class Scope {
+    /** The goog.module id, or null for a goog.scope block. */
+    @Nullable final String moduleId;
+
+    final List<Statement> statements;
+
+    Scope(@Nullable String moduleId, List<Statement> statements) {
+      this.moduleId = moduleId;
+      this.statements = Collections.unmodifiableList(statements);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Scope)) {
+        return false;
+      }
+      Scope other = (Scope) o;
+      return Objects.equals(moduleId, other.moduleId) && statements.equals(other.statements);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(moduleId, statements);
+    }
+  }
+
+  /** Whether the goog.module calls goog.module.declareLegacyNamespace(). */
+  final boolean legacyNamespace;
+
+  final List<Scope> scopes;
+
+  InputFacts(boolean legacyNamespace, List<Scope> scopes) {
+    this.legacyNamespace = legacyNamespace;
+    this.scopes = Collections.unmodifiableList(scopes);
+  }
+
+  /** Extracts the facts from the AST of a file, as parsed before any compiler pass ran. */
+  static InputFacts extract(Node astRoot) {
+    boolean legacyNamespace = false;
+    List<Scope> scopes = new ArrayList<>();
+
+    // Symbols can be imported into a variable in a goog.module() file, so look for imports in the
+    // body of the goog module.
+    String moduleId = ImportBasedMapBuilder.getGoogModuleId(astRoot);
+    Node topLevel = astRoot;
+    if (moduleId != null) {
+      topLevel = astRoot.getFirstChild();
+      scopes.add(new Scope(moduleId, extractStatements(topLevel)));
+    }
+
+    for (Node statement : topLevel.children()) {
+      if (ImportBasedMapBuilder.isDeclareLegacyNamespaceStatement(statement)) {
+        legacyNamespace = true;
+      }
+    }
+
+    // Or symbols can be imported into a variable in a top-level goog.scope() block, so look for
+    // imports in the bodies of any goog scopes.
+    for (Node googScope : ImportBasedMapBuilder.getTopLevelGoogScopes(astRoot)) {
+      scopes.add(new Scope(null, extractStatements(googScope)));
+    }
+    return new InputFacts(legacyNamespace, scopes);
+  }
+
+  private static List<Statement> extractStatements(Node body) {
+    List<Statement> statements = new ArrayList<>();
+    Map<String, String> none = Collections.emptyMap();
+    for (Node statement : body.children()) {
+      if (ImportBasedMapBuilder.isImportAssignment(statement)) {
+        String importedModuleId = statement.getFirstFirstChild().getChildAtIndex(1).getString();
+        String variableName = statement.getFirstChild().getString();
+        statements.add(
+            new Statement(StatementKind.IMPORT, importedModuleId, variableName, null, none));
+      } else if (ImportBasedMapBuilder.isImportDestructuringAssignment(statement)) {
+        String importedModuleId =
+            statement.getFirstChild().getChildAtIndex(1).getChildAtIndex(1).getString();
+        statements.add(
+            new Statement(
+                StatementKind.DESTRUCTURING_IMPORT,
+                importedModuleId,
+                null,
+                null,
+                ImportBasedMapBuilder.objectLiteralASTToStringMap(statement.getFirstFirstChild())));
+      } else if (ImportBasedMapBuilder.isVariableDestructuringAssignment(statement)) {
+        String destructuredVariable = statement.getFirstChild().getChildAtIndex(1).getString();
+        statements.add(
+            new Statement(
+                StatementKind.VARIABLE_DESTRUCTURING,
+                destructuredVariable,
+                null,
+                null,
+                ImportBasedMapBuilder.objectLiteralASTToStringMap(statement.getFirstFirstChild())));
+      } else if (ImportBasedMapBuilder.isWholeModuleExportAssignment(statement)) {
+        statements.add(
+            new Statement(
+                StatementKind.EXPORT,
+                ImportBasedMapBuilder.getExportsAssignmentRHS(statement),
+                null,
+                null,
+                none));
+      } else if (ImportBasedMapBuilder.isObjectLiteralExport(statement)) {
+        Node objectLiteral = statement.getFirstChild().getChildAtIndex(1);
+        statements.add(
+            new Statement(
+                StatementKind.OBJECT_LITERAL_EXPORT,
+                null,
+                null,
+                null,
+                ImportBasedMapBuilder.objectLiteralASTToStringMap(objectLiteral)));
+      } else if (ImportBasedMapBuilder.isNamedExportAssignment(statement)) {
+        statements.add(
+            new Statement(
+                StatementKind.NAMED_EXPORT,
+                ImportBasedMapBuilder.getExportsAssignmentRHS(statement),
+                ImportBasedMapBuilder.getNamedExportName(statement),
+                null,
+                none));
+      } else if (ImportBasedMapBuilder.isNamedExportPropAssignment(statement)) {
+        statements.add(
+            new Statement(
+                StatementKind.NAMED_PROP_EXPORT,
+                ImportBasedMapBuilder.getExportsAssignmentPropRootName(statement),
+                ImportBasedMapBuilder.getNamedExportName(statement),
+                ImportBasedMapBuilder.getExportsAssignmentPropName(statement),
+                none));
+      }
+    }
+    return statements;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof InputFacts)) {
+      return false;
+    }
+    InputFacts other = (InputFacts) o;
+    return legacyNamespace == other.legacyNamespace && scopes.equals(other.scopes);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(legacyNamespace, scopes);
+  }
+}
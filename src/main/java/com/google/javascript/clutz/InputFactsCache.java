@@ -0,0 +1,232 @@
+package com.google.javascript.clutz;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.Hashing;
+import com.google.javascript.common.AtomicFiles;
+import com.google.javascript.jscomp.Compiler;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+
+/**
+ * A cache of the {@link InputFacts} of input files in a directory, keyed by the content of the
+ * file, so that the ASTs of unchanged inputs need not be cloned and walked again with
+ * --partialInput. The directory can be shared by concurrent processes.
+ *
+ * <p>Each entry is a small binary file under a two character prefix directory, written through
+ * {@link AtomicFiles} so that other users sharing the directory can read it. Like in the {@link
+ * ResultCache}, reads refresh the mtime of an entry, and when the cache grows over its size cap the
+ * least recently used entries are evicted, under a lock file held by one process at a time. The
+ * directory can be deleted at any time.
+ */
+class InputFactsCache {
+  private static final int MAGIC = 0x434c4946; // "CLIF"
+  private static final int FORMAT_VERSION = 2;
+  private static final String ENTRY_SUFFIX = ".facts";
+  private static final String LOCK_FILE = "lock";
+
+  private final Path dir;
+  private final long maxSizeBytes;
+
+  InputFactsCache(String dir, long maxSizeBytes) {
+    this.dir = Paths.get(dir);
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * Returns the cache key of a file with the given content. The Closure version is part of the key,
+   * as the facts are extracted from the AST it parses.
+   */
+  static String computeKey(String code) {
+    return Hashing.sha256()
+        .newHasher()
+        .putInt(FORMAT_VERSION)
+        .putString(Compiler.getReleaseVersion(), UTF_8)
+        .putInt(code.length())
+        .putString(code, UTF_8)
+        .hash()
+        .toString();
+  }
+
+  private Path getPath(String key) {
+    return dir.resolve(key.substring(0, 2)).resolve(key.substring(2) + ENTRY_SUFFIX);
+  }
+
+  /** Returns the facts for the key, or null if they are not cached or cannot be read. */
+  @Nullable
+  InputFacts get(String key) {
+    Path path = getPath(key);
+    InputFacts facts;
+    try (InputStream stream = Files.newInputStream(path)) {
+      facts = readFacts(stream);
+      Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException | RuntimeException e) {
+      // Missing, evicted concurrently, or written by another clutz version.
+      return null;
+    }
+    return facts;
+  }
+
+  /**
+   * Stores the facts for the key. Failures are reported, but do not fail the invocation. Call
+   * {@link #evict} once after storing all facts of an invocation.
+   */
+  void put(String key, InputFacts facts) {
+    Path path = getPath(key);
+    try {
+      Files.createDirectories(path.getParent());
+      Path temp = AtomicFiles.createTempFile(path);
+      try {
+        try (OutputStream stream = Files.newOutputStream(temp)) {
+          writeFacts(facts, stream);
+        }
+        AtomicFiles.moveIntoPlace(temp, path);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    } catch (IOException e) {
+      System.err.println("Unable to write to the clutz facts cache " + dir + ": " + e.getMessage());
+    }
+  }
+
+  private static final class CachedFile {
+    final Path path;
+    final long size;
+    final long lastModified;
+
+    CachedFile(Path path, long size, long lastModified) {
+      this.path = path;
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+  }
+
+  /**
+   * Deletes the least recently used entries until the cache fits into its size cap. Failures are
+   * reported, but do not fail the invocation.
+   */
+  void evict() {
+    try (FileChannel channel =
+            FileChannel.open(
+                dir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock = channel.lock()) {
+      List<CachedFile> files = new ArrayList<>();
+      long totalSize = 0;
+      try (Stream<Path> paths = Files.walk(dir, 2)) {
+        for (Path path : (Iterable<Path>) paths::iterator) {
+          if (!path.getFileName().toString().endsWith(ENTRY_SUFFIX)) {
+            continue;
+          }
+          BasicFileAttributes attributes;
+          try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+          } catch (NoSuchFileException e) {
+            continue;
+          }
+          files.add(
+              new CachedFile(path, attributes.size(), attributes.lastModifiedTime().toMillis()));
+          totalSize += attributes.size();
+        }
+      }
+      files.sort(Comparator.comparingLong(f -> f.lastModified));
+      for (CachedFile file : files) {
+        if (totalSize <= maxSizeBytes) {
+          break;
+        }
+        Files.deleteIfExists(file.path);
+        totalSize -= file.size;
+      }
+    } catch (IOException | UncheckedIOException e) {
+      System.err.println(
+          "Unable to evict from the clutz facts cache " + dir + ": " + e.getMessage());
+    }
+  }
+
+  private static void writeFacts(InputFacts facts, OutputStream stream) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+    out.writeInt(MAGIC);
+    out.writeInt(FORMAT_VERSION);
+    out.writeBoolean(facts.legacyNamespace);
+    out.writeInt(facts.scopes.size());
+    for (InputFacts.Scope scope : facts.scopes) {
+      writeNullableString(out, scope.moduleId);
+      out.writeInt(scope.statements.size());
+      for (InputFacts.Statement statement : scope.statements) {
+        out.writeByte(statement.kind.ordinal());
+        writeNullableString(out, statement.target);
+        writeNullableString(out, statement.name);
+        writeNullableString(out, statement.property);
+        out.writeInt(statement.bindings.size());
+        for (Map.Entry<String, String> binding : statement.bindings.entrySet()) {
+          out.writeUTF(binding.getKey());
+          out.writeUTF(binding.getValue());
+        }
+      }
+    }
+    out.flush();
+  }
+
+  private static InputFacts readFacts(InputStream stream) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+    if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+      throw new IOException("Not a clutz facts cache entry, or written by another clutz version");
+    }
+    boolean legacyNamespace = in.readBoolean();
+    int scopeCount = in.readInt();
+    List<InputFacts.Scope> scopes = new ArrayList<>(scopeCount);
+    for (int i = 0; i < scopeCount; i++) {
+      String moduleId = readNullableString(in);
+      int statementCount = in.readInt();
+      List<InputFacts.Statement> statements = new ArrayList<>(statementCount);
+      for (int j = 0; j < statementCount; j++) {
+        InputFacts.StatementKind statementKind = InputFacts.StatementKind.values()[in.readByte()];
+        String target = readNullableString(in);
+        String name = readNullableString(in);
+        String property = readNullableString(in);
+        int bindingCount = in.readInt();
+        Map<String, String> bindings = new LinkedHashMap<>();
+        for (int k = 0; k < bindingCount; k++) {
+          bindings.put(in.readUTF(), in.readUTF());
+        }
+        statements.add(new InputFacts.Statement(statementKind, target, name, property, bindings));
+      }
+      scopes.add(new InputFacts.Scope(moduleId, statements));
+    }
+    return new InputFacts(legacyNamespace, scopes);
+  }
+
+  private static void writeNullableString(DataOutputStream out, @Nullable String s)
+      throws IOException {
+    out.writeBoolean(s != null);
+    if (s != null) {
+      out.writeUTF(s);
+    }
+  }
+
+  @Nullable
+  private static String readNullableString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+}
@@ -1,6 +1,5 @@
 package com.google.javascript.clutz;
 
-import com.google.javascript.rhino.Node;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -18,36 +17,36 @@ public class LegacyNamespaceReexportMapBuilder extends ImportBasedMapBuilder {
 
   @Override
   protected Map<String, String> build(
-      String localModuleId, Node moduleBody, Set<String> googProvides) {
+      InputFacts.Scope scope, InputFacts input, Set<String> googProvides) {
+    String localModuleId = scope.moduleId;
     Map<String, String> reexportMap = new LinkedHashMap<>();
     if (localModuleId == null) {
       return reexportMap;
     }
 
-    if (!isLegacyNamespaceModule(moduleBody)) {
+    if (!input.legacyNamespace) {
       return reexportMap;
     }
 
-    for (Node statement : moduleBody.children()) {
-      if (isWholeModuleExportAssignment(statement)) {
+    for (InputFacts.Statement statement : scope.statements) {
+      if (statement.kind == InputFacts.StatementKind.EXPORT) {
         // `exports = foo`
-        String localVariableName = getExportsAssignmentRHS(statement);
+        String localVariableName = statement.target;
 
         reexportMap.put(
             buildWholeModuleExportSymbolName(localModuleId),
             buildLocalSymbolName(localModuleId, localVariableName));
-      } else if (isNamedExportAssignment(statement)) {
+      } else if (statement.kind == InputFacts.StatementKind.NAMED_EXPORT) {
         // `exports.foo = foo`
-        String localVariableName = getExportsAssignmentRHS(statement);
-        String exportName = getNamedExportName(statement);
+        String localVariableName = statement.target;
+        String exportName = statement.name;
 
         reexportMap.put(
             buildNamedExportSymbolName(localModuleId, exportName),
             buildLocalSymbolName(localModuleId, localVariableName));
-      } else if (isObjectLiteralExport(statement)) {
+      } else if (statement.kind == InputFacts.StatementKind.OBJECT_LITERAL_EXPORT) {
         // `exports = {foo, bar}`
-        for (Entry<String, String> e :
-            objectLiteralASTToStringMap(statement.getFirstChild().getChildAtIndex(1)).entrySet()) {
+        for (Entry<String, String> e : statement.bindings.entrySet()) {
           String localVariableName = e.getValue();
           String exportName = e.getKey();
 
@@ -59,28 +58,4 @@ public class LegacyNamespaceReexportMapBuilder extends ImportBasedMapBuilder {
     }
     return reexportMap;
   }
-
-  private boolean isLegacyNamespaceModule(Node moduleBody) {
-    for (Node statement : moduleBody.children()) {
-      if (isDeclareLegacyNamespaceStatement(statement)) {
-        return true;
-      }
-    }
-    return false;
-  }
-
-  /** Matches `goog.module.declareLegacyNamespace();` */
-  protected boolean isDeclareLegacyNamespaceStatement(Node statement) {
-    if (!statement.isExprResult()) {
-      return false;
-    }
-
-    if (!statement.getFirstChild().isCall()) {
-      return false;
-    }
-
-    Node callBody = statement.getFirstFirstChild();
-
-    return callBody.matchesQualifiedName("goog.module.declareLegacyNamespace");
-  }
 }
@@ -7,6 +7,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
 import com.google.common.io.Files;
+import com.google.javascript.common.PhaseProfiler;
 import com.google.javascript.jscomp.*;
 import com.google.javascript.jscomp.CompilerOptions.LanguageMode;
 import com.google.javascript.jscomp.deps.ModuleLoader;
@@ -14,13 +15,16 @@ import com.google.javascript.jscomp.parsing.Config;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
@@ -125,6 +129,15 @@ public class Options {
   )
   List<String> entryPoints = new ArrayList<>();
 
+  @Option(
+    name = "--prune_to_depgraph_roots",
+    usage =
+        "when no --closure_entry_points are given, use the provides and ES6 modules of the"
+            + " depgraph roots as entry points, so that files not transitively required by a root"
+            + " are not compiled"
+  )
+  boolean pruneToDepgraphRoots = false;
+
   @Option(
     name = "--partialInput",
     usage =
@@ -158,6 +171,136 @@ public class Options {
   )
   private CompilerOptions.TracerMode tracerMode = CompilerOptions.TracerMode.OFF;
 
+  @Option(
+    name = "--emit_reachable_externs_only",
+    usage =
+        "only emit extern symbols that are transitively referenced from the emitted declarations."
+            + " All other extern declarations are expected to come from a separately generated"
+            + " .d.ts file."
+  )
+  boolean emitReachableExternsOnly = false;
+
+  @Option(
+    name = "--batch_manifest",
+    usage =
+        "JSON file listing many targets (target, roots, depgraphs, output). All sources are"
+            + " compiled once and one .d.ts file is written per target.",
+    metaVar = "file.json"
+  )
+  String batchManifest = null;
+
+  @Option(
+    name = "--shard_output_by_root",
+    usage =
+        "treat -o as a directory and write one .d.ts per root file, plus "
+            + DeclarationGenerator.COMMON_SHARD
+            + " with the shared declarations"
+  )
+  boolean shardOutputByRoot = false;
+
+  @Option(
+    name = "--skip_function_bodies",
+    usage =
+        "prune function bodies that do not influence declared types before type checking."
+            + " Constructors and bodies that declare fields or properties are kept."
+  )
+  boolean skipFunctionBodies = false;
+
+  @Option(
+    name = "--verify_skip_function_bodies",
+    usage =
+        "with --skip_function_bodies, also run a full compilation and fail if its output differs"
+  )
+  boolean verifySkipFunctionBodies = false;
+
+  @Option(
+    name = "--profile",
+    usage =
+        "write wall time, CPU time, allocated bytes and peak heap per phase and for the most"
+            + " expensive provides to this file",
+    metaVar = "PROFILE"
+  )
+  String profileFile = null;
+
+  @Option(
+    name = "--profile_format",
+    usage = "format of the --profile output. Options: JSON, CHROME_TRACE"
+  )
+  PhaseProfiler.Format profileFormat = PhaseProfiler.Format.JSON;
+
+  @Option(
+    name = "--fail_fast",
+    usage =
+        "stop compiling at the first error and skip emitting declarations. The errors found until"
+            + " then are still reported"
+  )
+  boolean failFast = false;
+
+  @Option(
+    name = "--compact",
+    usage =
+        "emit the declarations without comments, JSDoc, indentation and optional whitespace, to"
+            + " reduce their size and the time TypeScript takes to parse them"
+  )
+  boolean compact = false;
+
+  @Option(
+    name = "--emit_index",
+    usage =
+        "also write OUTPUT.index.json with the byte and line ranges of every top level namespace"
+            + " and module declaration, and the JS file it was generated from"
+  )
+  boolean emitIndex = false;
+
+  @Option(
+    name = "--cache_dir",
+    usage =
+        "cache the output and diagnostics of invocations in this directory, keyed by the content"
+            + " of all inputs and the options, and skip compilation when they are cached",
+    metaVar = "CACHE_DIR"
+  )
+  String cacheDir = null;
+
+  @Option(
+    name = "--cache_max_size_mb",
+    usage = "evict the least recently used entries when the --cache_dir grows over this size"
+  )
+  long cacheMaxSizeMb = 1024;
+
+  @Option(
+    name = "--facts_cache_dir",
+    usage =
+        "with --partialInput, cache the provides, requires and import aliases of every input in"
+            + " this directory, keyed by file content, so unchanged inputs are not walked again",
+    metaVar = "FACTS_CACHE_DIR"
+  )
+  String factsCacheDir = null;
+
+  @Option(
+    name = "--facts_cache_max_size_mb",
+    usage = "evict the least recently used entries when the --facts_cache_dir grows over this size"
+  )
+  long factsCacheMaxSizeMb = 256;
+
+  @Option(
+    name = "--bounded_memory",
+    usage =
+        "release the parsed input clones, symbol tables and output buffers as soon as they are no"
+            + " longer needed, and render the output straight into the output files. Meant to"
+            + " lower the peak heap on very large inputs, but the effect is not measured; compare"
+            + " the peak heap reported by --profile with and without it"
+  )
+  boolean boundedMemory = false;
+
+  @Option(
+    name = "--watch",
+    usage =
+        "keep running and regenerate the output whenever an input file, depgraph or manifest"
+            + " changes. Each change recompiles all inputs. Without --cache_dir and"
+            + " --facts_cache_dir, their caches are kept in a temporary directory for the session"
+  )
+  boolean watch = false;
+
   @Option(
     name = "--browserResolverStrippedPrefixes",
     usage = "A list of prefixes for absolute ES6 module paths, that would be replaced by '/'",
@@ -170,6 +313,8 @@ public class Options {
   List<String> arguments = new ArrayList<>();
 
   Depgraph depgraph;
+  /** With --prune_to_depgraph_roots, the root ES6 modules, which are entry points by file. */
+  List<String> entryPointFiles = new ArrayList<>();
   // TODO(martinprobst): Remove when internal Google is upgraded to a more recent args4j
   // library that supports Pattern arguments.
   Pattern skipEmitPattern;
@@ -180,11 +325,14 @@ public class Options {
     options.setClosurePass(true);
     options.setTracerMode(this.tracerMode);
 
-    if (this.entryPoints.isEmpty()) {
+    if (this.entryPoints.isEmpty() && this.entryPointFiles.isEmpty()) {
       options.setDependencyOptions(DependencyOptions.sortOnly());
     } else {
       ImmutableList<ModuleIdentifier> entryPointIdentifiers =
-          this.entryPoints.stream().map(ModuleIdentifier::forClosure).collect(toImmutableList());
+          Stream.concat(
+                  this.entryPoints.stream().map(ModuleIdentifier::forClosure),
+                  this.entryPointFiles.stream().map(ModuleIdentifier::forFile))
+              .collect(toImmutableList());
       options.setDependencyOptions(
           DependencyOptions.pruneLegacyForEntryPoints(entryPointIdentifiers));
     }
@@ -224,7 +372,9 @@ public class Options {
     options.setInferTypes(true);
     // turns off optimizations.
     options.setChecksOnly(true);
-    options.setPreserveDetailedSourceInfo(true);
+    // Detailed source info (original names and node lengths) is not read by clutz, so it is not
+    // kept for the inputs. JSDoc descriptions are parsed for all inputs, as they are emitted for
+    // externs and for unprovided types from non-root files, too.
     options.setParseJsDocDocumentation(Config.JsDocParsing.INCLUDE_DESCRIPTIONS_NO_WHITESPACE);
     options.clearConformanceConfigs();
     if (partialInput) {
@@ -240,7 +390,20 @@ public class Options {
     if (skipEmitRegExp != null) {
       skipEmitPattern = Pattern.compile(skipEmitRegExp);
     }
+    if (batchManifest != null) {
+      // The compilation is shared between all targets, so it needs the union of their depgraphs.
+      Set<String> allDepgraphFiles = new LinkedHashSet<>(depgraphFiles);
+      allDepgraphFiles.addAll(BatchManifest.parseFrom(batchManifest).getDepgraphFiles());
+      depgraphFiles = new ArrayList<>(allDepgraphFiles);
+    }
     depgraph = Depgraph.parseFrom(depgraphFiles);
+    if (pruneToDepgraphRoots && entryPoints.isEmpty()) {
+      // ES6 modules have no provides, so root modules are entry points by file name. Plain scripts
+      // are always kept by Closure's dependency pruning, so roots that are scripts are still
+      // compiled.
+      entryPoints.addAll(depgraph.getRootProvides());
+      entryPointFiles.addAll(depgraph.getRootEs6Modules());
+    }
     if (filterSourcesWithDepgraphs) {
       // Clutz still takes the list of files to compile from the outside, because Closure depends
       // on source order in many places. The depgraph files are not sorted, build order is instead
@@ -265,11 +428,21 @@ public class Options {
     // So either there are no externs present or no depgraphs present. In either case there is no
     // point doing any union/intersection of those.
 
+    if (batchManifest != null && arguments.isEmpty()) {
+      arguments.addAll(depgraph.getRoots());
+      arguments.addAll(depgraph.getNonroots());
+    }
     // Exclude externs that are already in the sources to avoid duplicated symbols.
     arguments.removeAll(externs);
     if (!strictDeps) {
       depgraph = depgraph.withNonrootsAsRoots();
     }
+    if (shardOutputByRoot && "-".equals(output)) {
+      throw new CmdLineException(parser, "--shard_output_by_root requires -o to name a directory");
+    }
+    if (emitIndex && "-".equals(output)) {
+      throw new CmdLineException(parser, "--emit_index requires -o to name a file or directory");
+    }
     if (arguments.isEmpty() && externs.isEmpty()) {
       throw new CmdLineException(parser, "No files or externs were given");
     }
@@ -283,5 +456,60 @@ public class Options {
     }
   }
 
+  /**
+   * Whether the result of the invocation is looked up in and stored to the --cache_dir. Sharded and
+   * batch outputs are not cached, and --verify_skip_function_bodies always compiles.
+   */
+  boolean useResultCache() {
+    return cacheDir != null
+        && !shardOutputByRoot
+        && batchManifest == null
+        && !(skipFunctionBodies && verifySkipFunctionBodies);
+  }
+
+  /**
+   * Whether the declarations are rendered straight into the output with --bounded_memory. The
+   * --cache_dir and --verify_skip_function_bodies need the whole output as a string.
+   */
+  boolean streamOutput() {
+    return boundedMemory && !useResultCache() && !(skipFunctionBodies && verifySkipFunctionBodies);
+  }
+
+  /**
+   * Returns the options that influence the declarations and diagnostics, as part of the key of the
+   * --cache_dir. The content of sources, externs and depgraphs is keyed separately.
+   */
+  List<String> getCacheKeyOptions() {
+    return Arrays.asList(
+        "debug=" + debug,
+        "closureEnv=" + closureEnv,
+        "strictDeps=" + strictDeps,
+        "entryPoints=" + entryPoints,
+        "entryPointFiles=" + entryPointFiles,
+        "partialInput=" + partialInput,
+        "skipEmitRegExp=" + skipEmitRegExp,
+        "emitReachableExternsOnly=" + emitReachableExternsOnly,
+        "skipFunctionBodies=" + skipFunctionBodies,
+        "failFast=" + failFast,
+        "emitIndex=" + emitIndex,
+        "compact=" + compact,
+        "browserResolverStrippedPrefixes=" + browserResolverStrippedPrefixes,
+        "collidingProvides=" + new TreeSet<>(collidingProvides));
+  }
+
+  /** Returns the files whose changes require regenerating the output in --watch mode. */
+  List<String> getWatchedFiles() {
+    List<String> files = new ArrayList<>(arguments);
+    files.addAll(externs);
+    files.addAll(depgraphFiles);
+    if (collidingProvidesFile != null) {
+      files.add(collidingProvidesFile);
+    }
+    if (batchManifest != null) {
+      files.add(batchManifest);
+    }
+    return files;
+  }
+
   Options() {}
 }
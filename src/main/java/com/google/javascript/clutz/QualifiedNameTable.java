@@ -0,0 +1,108 @@
+package com.google.javascript.clutz;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Interns dotted qualified names (e.g. "a.b.c") as dense integer ids.
+ *
+ * <p>Every name keeps a pointer to the id of its namespace ("a.b" for "a.b.c"), so namespaces and
+ * unqualified names are computed once per name instead of by repeated substring calls, and
+ * collections over names can be int-indexed lists and bitsets.
+ *
+ * <p>Id 0 is the empty root namespace, which is the namespace of all undotted names.
+ */
+class QualifiedNameTable {
+  static final int ROOT = 0;
+  static final int NOT_FOUND = -1;
+
+  private final List<String> names = new ArrayList<>();
+  private final List<String> simpleNames = new ArrayList<>();
+  private int[] parents = new int[64];
+  /** Open addressing hash table from name hash to id + 1, 0 meaning an empty slot. */
+  private int[] slots = new int[128];
+
+  QualifiedNameTable() {
+    add("", ROOT, "");
+  }
+
+  int size() {
+    return names.size();
+  }
+
+  /** Returns the id of the given name, adding it and all its namespaces if not yet present. */
+  int intern(String name) {
+    int id = lookup(name);
+    if (id != NOT_FOUND) {
+      return id;
+    }
+    int dotIdx = name.lastIndexOf('.');
+    if (dotIdx == -1) {
+      return add(name, ROOT, name);
+    }
+    int parent = intern(name.substring(0, dotIdx));
+    return add(name, parent, name.substring(dotIdx + 1));
+  }
+
+  /** Returns the id of the given name, or {@link #NOT_FOUND} without adding it. */
+  int lookup(String name) {
+    int mask = slots.length - 1;
+    for (int i = name.hashCode() & mask; ; i = (i + 1) & mask) {
+      int slot = slots[i];
+      if (slot == 0) {
+        return NOT_FOUND;
+      }
+      if (names.get(slot - 1).equals(name)) {
+        return slot - 1;
+      }
+    }
+  }
+
+  String getName(int id) {
+    return names.get(id);
+  }
+
+  /** Returns the part of the name after the last dot, or the name itself if it is undotted. */
+  String getSimpleName(int id) {
+    return simpleNames.get(id);
+  }
+
+  /** Returns the id of the namespace of the name, {@link #ROOT} for undotted names. */
+  int getParent(int id) {
+    return parents[id];
+  }
+
+  private int add(String name, int parent, String simpleName) {
+    int id = names.size();
+    names.add(name);
+    simpleNames.add(simpleName);
+    if (id == parents.length) {
+      parents = Arrays.copyOf(parents, id * 2);
+    }
+    parents[id] = parent;
+    // Keep the load factor below one half.
+    if (names.size() * 2 > slots.length) {
+      rehash(slots.length * 2);
+    } else {
+      insert(id);
+    }
+    return id;
+  }
+
+  private void rehash(int capacity) {
+    slots = new int[capacity];
+    for (int id = 0; id < names.size(); id++) {
+      insert(id);
+    }
+  }
+
+  private void insert(int id) {
+    int mask = slots.length - 1;
+    int i = names.get(id).hashCode() & mask;
+    while (slots[i] != 0) {
+      i = (i + 1) & mask;
+    }
+    slots[i] = id + 1;
+  }
+}
@@ -0,0 +1,258 @@
+package com.google.javascript.clutz;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import com.google.javascript.common.AtomicFiles;
+import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.SourceFile;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+
+/**
+ * A content addressed cache of whole clutz invocations in a directory, which can be shared by
+ * concurrent processes, e.g. CI shards or developers on a shared filesystem.
+ *
+ * <p>The key is a digest of the clutz and Closure versions, the options that influence the output
+ * and the content of every source, extern and depgraph. An entry holds the generated .d.ts, its
+ * --emit_index sidecar and the reported diagnostics, so a hit skips compilation entirely.
+ *
+ * <p>Entries are written to a temporary file and renamed into place, so readers never observe a
+ * partial entry. Reads refresh the mtime of an entry, and when the cache grows over its size cap
+ * the least recently used entries are evicted, under a lock file held by one process at a time.
+ */
+class ResultCache {
+  private static final int MAGIC = 0x434c5243; // "CLRC"
+  private static final int FORMAT_VERSION = 2;
+  private static final String ENTRY_SUFFIX = ".entry";
+  private static final String LOCK_FILE = "lock";
+
+  static final class Entry {
+    final String dts;
+    /** The --emit_index sidecar of the .d.ts, if it was requested. */
+    @Nullable final String index;
+
+    final String diagnostics;
+    final boolean hasErrors;
+
+    Entry(String dts, @Nullable String index, String diagnostics, boolean hasErrors) {
+      this.dts = dts;
+      this.index = index;
+      this.diagnostics = diagnostics;
+      this.hasErrors = hasErrors;
+    }
+  }
+
+  private final Path dir;
+  private final long maxSizeBytes;
+
+  ResultCache(String dir, long maxSizeBytes) {
+    this.dir = Paths.get(dir);
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /** Returns the cache key of compiling the given sources and externs with the options. */
+  static String computeKey(Options opts, List<SourceFile> sourceFiles, List<SourceFile> externs)
+      throws IOException {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putInt(FORMAT_VERSION);
+    putString(hasher, getClutzVersion());
+    putString(hasher, Compiler.getReleaseVersion());
+    for (String option : opts.getCacheKeyOptions()) {
+      putString(hasher, option);
+    }
+    putFiles(hasher, sourceFiles);
+    putFiles(hasher, externs);
+    for (String depgraph : opts.depgraphFiles) {
+      putString(hasher, depgraph);
+      hasher.putBytes(Files.readAllBytes(Paths.get(depgraph)));
+    }
+    return hasher.hash().toString();
+  }
+
+  private static void putFiles(Hasher hasher, List<SourceFile> files) throws IOException {
+    hasher.putInt(files.size());
+    for (SourceFile file : files) {
+      // The names are part of the key, as they end up in the output and diagnostics.
+      putString(hasher, file.getName());
+      putString(hasher, file.getCode());
+    }
+  }
+
+  private static void putString(Hasher hasher, @Nullable String s) {
+    if (s == null) {
+      hasher.putInt(-1);
+    } else {
+      hasher.putInt(s.length()).putString(s, UTF_8);
+    }
+  }
+
+  /**
+   * The clutz build is not stamped with a version, so it is identified by the digest of its jar.
+   * When running from a classes directory, e.g. in tests, only the location is used.
+   */
+  private static String getClutzVersion() throws IOException {
+    CodeSource codeSource = ResultCache.class.getProtectionDomain().getCodeSource();
+    if (codeSource == null) {
+      return "unknown";
+    }
+    Path location;
+    try {
+      // Unlike URL.getPath(), this decodes escaped characters, e.g. spaces in the path of the jar.
+      location = Paths.get(codeSource.getLocation().toURI());
+    } catch (URISyntaxException e) {
+      return codeSource.getLocation().toString();
+    }
+    if (!Files.isRegularFile(location)) {
+      return location.toString();
+    }
+    return MoreFiles.asByteSource(location).hash(Hashing.sha256()).toString();
+  }
+
+  /** Returns the entry for the key, or null if it is not cached or cannot be read. */
+  @Nullable
+  Entry get(String key) {
+    Path path = dir.resolve(key + ENTRY_SUFFIX);
+    Entry entry;
+    try (InputStream stream = Files.newInputStream(path)) {
+      entry = readEntry(stream);
+      Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException e) {
+      // Missing, evicted concurrently, or written by another clutz version.
+      return null;
+    }
+    return entry;
+  }
+
+  /**
+   * Stores the entry for the key and evicts the least recently used entries if the cache is over
+   * its size cap. Failures are reported, but do not fail the invocation.
+   */
+  void put(String key, Entry entry) {
+    try {
+      Files.createDirectories(dir);
+      Path path = dir.resolve(key + ENTRY_SUFFIX);
+      // Other users sharing the cache must be able to read the entry.
+      Path temp = AtomicFiles.createTempFile(path);
+      try {
+        try (OutputStream stream = Files.newOutputStream(temp)) {
+          writeEntry(entry, stream);
+        }
+        AtomicFiles.moveIntoPlace(temp, path);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+      evict();
+    } catch (IOException e) {
+      System.err.println("Unable to write to the clutz cache " + dir + ": " + e.getMessage());
+    }
+  }
+
+  private static final class CachedFile {
+    final Path path;
+    final long size;
+    final long lastModified;
+
+    CachedFile(Path path, long size, long lastModified) {
+      this.path = path;
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+  }
+
+  /** Deletes the least recently used entries until the cache fits into its size cap. */
+  void evict() throws IOException {
+    try (FileChannel channel =
+            FileChannel.open(
+                dir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock = channel.lock()) {
+      List<CachedFile> files = new ArrayList<>();
+      long totalSize = 0;
+      try (Stream<Path> paths = Files.list(dir)) {
+        for (Path path : (Iterable<Path>) paths::iterator) {
+          if (!path.getFileName().toString().endsWith(ENTRY_SUFFIX)) {
+            continue;
+          }
+          BasicFileAttributes attributes;
+          try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+          } catch (NoSuchFileException e) {
+            continue;
+          }
+          files.add(
+              new CachedFile(path, attributes.size(), attributes.lastModifiedTime().toMillis()));
+          totalSize += attributes.size();
+        }
+      }
+      files.sort(Comparator.comparingLong(f -> f.lastModified));
+      for (CachedFile file : files) {
+        if (totalSize <= maxSizeBytes) {
+          break;
+        }
+        Files.deleteIfExists(file.path);
+        totalSize -= file.size;
+      }
+    }
+  }
+
+  private static void writeEntry(Entry entry, OutputStream stream) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+    out.writeInt(MAGIC);
+    out.writeInt(FORMAT_VERSION);
+    out.writeBoolean(entry.hasErrors);
+    writeString(out, entry.diagnostics);
+    writeString(out, entry.dts);
+    out.writeBoolean(entry.index != null);
+    if (entry.index != null) {
+      writeString(out, entry.index);
+    }
+    out.flush();
+  }
+
+  private static Entry readEntry(InputStream stream) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+    if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+      throw new IOException("Not a clutz cache entry, or written by another clutz version");
+    }
+    boolean hasErrors = in.readBoolean();
+    String diagnostics = readString(in);
+    String dts = readString(in);
+    String index = in.readBoolean() ? readString(in) : null;
+    return new Entry(dts, index, diagnostics, hasErrors);
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes(UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, UTF_8);
+  }
+}
@@ -0,0 +1,166 @@
+package com.google.javascript.clutz;
+
+import com.google.common.collect.Ordering;
+import com.google.javascript.jscomp.CompilerInput;
+import com.google.javascript.jscomp.TypedVar;
+import com.google.javascript.rhino.InputId;
+import com.google.javascript.rhino.jstype.EnumType;
+import com.google.javascript.rhino.jstype.JSType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BiPredicate;
+import java.util.regex.Pattern;
+
+/**
+ * The top scope symbols, sorted and classified once per compilation. The emit passes read the
+ * views of this index instead of copying and sorting the whole top scope for every provide, which
+ * for large extern sets has hundreds of thousands of symbols.
+ *
+ * <p>All lists except {@link #getSourceSymbols} are sorted by source file and name, the order in
+ * which symbols are emitted, and must not be modified.
+ */
+final class TopScopeIndex {
+  private static final Ordering<TypedVar> BY_SOURCE_FILE =
+      Ordering.natural()
+          .onResultOf(
+              input -> {
+                if (input == null) return null;
+                return input.getInputName();
+              });
+
+  private static final Ordering<TypedVar> BY_VAR_NAME =
+      Ordering.natural()
+          .onResultOf(
+              input -> {
+                if (input == null) return null;
+                return input.getName();
+              });
+
+  static final Ordering<TypedVar> BY_SOURCE_FILE_AND_VAR_NAME =
+      BY_SOURCE_FILE.compound(BY_VAR_NAME);
+
+  private static final Pattern WINDOW_GLOBAL_PREFIX = Pattern.compile("^(window|this)\\.");
+
+  private final List<TypedVar> symbols;
+  private final List<TypedVar> sourceSymbols;
+  private final List<TypedVar> externs;
+  private final TreeSet<String> externNames = new TreeSet<>();
+  private final Map<TypedVar, String> normalizedExternNames = new IdentityHashMap<>();
+
+  /**
+   * Indexes the top scope of the compiler.
+   *
+   * @param skipExtern returns true for the input file name and symbol name of externs that should
+   *     not be emitted, e.g. because TypeScript's lib.d.ts declares them.
+   */
+  TopScopeIndex(InitialParseRetainingCompiler compiler, BiPredicate<String, String> skipExtern) {
+    List<TypedVar> sorted = new ArrayList<>();
+    List<TypedVar> sourceSymbols = new ArrayList<>();
+    for (TypedVar symbol : compiler.getTopScope().getAllSymbols()) {
+      sorted.add(symbol);
+      // Built-ins can be identified by having null as input file.
+      CompilerInput input = compiler.getInput(new InputId(symbol.getInputName()));
+      if (input != null && !input.isExtern()) {
+        sourceSymbols.add(symbol);
+      }
+    }
+    this.sourceSymbols = Collections.unmodifiableList(sourceSymbols);
+    sorted.sort(BY_SOURCE_FILE_AND_VAR_NAME);
+    symbols = Collections.unmodifiableList(sorted);
+
+    List<TypedVar> candidates = new ArrayList<>();
+    Set<String> candidateNames = new HashSet<>();
+    Set<String> enumElements = new HashSet<>();
+    for (TypedVar symbol : symbols) {
+      CompilerInput input = compiler.getInput(new InputId(symbol.getInputName()));
+      if (input == null || !input.isExtern() || symbol.getType() == null) {
+        continue;
+      }
+      if (skipExtern.test(input.getName(), symbol.getName())) {
+        continue;
+      }
+      JSType type = symbol.getType();
+      // Closure treats all prototypes as separate symbols, but we handle them in conjunction with
+      // parent symbol.
+      if (symbol.getName().contains(".prototype")) continue;
+
+      // Sub-parts of namespaces in externs can appear as unknown if they miss a @const.
+      if (type.isUnknownType()) continue;
+
+      if (type.isEnumType()) {
+        for (String element : ((EnumType) type).getElements()) {
+          enumElements.add(symbol.getName() + "." + element);
+        }
+      }
+      candidates.add(symbol);
+      candidateNames.add(symbol.getName());
+    }
+
+    List<TypedVar> externs = new ArrayList<>();
+    for (TypedVar symbol : candidates) {
+      String name = symbol.getName();
+      // Some extern symbols appear twice, once unprefixed, and once prefixed with window or this.
+      // Skip the second one, if both exist.
+      String normalizedName = normalizeWindowGlobals(name);
+      if (!normalizedName.equals(name) && candidateNames.contains(normalizedName)) {
+        continue;
+      }
+      // Enum values like Enum.A will appear as stand-alone symbols, but we do not need to emit
+      // them.
+      if (enumElements.contains(name)) {
+        continue;
+      }
+      externs.add(symbol);
+      externNames.add(name);
+      normalizedExternNames.put(symbol, normalizedName);
+    }
+    this.externs = Collections.unmodifiableList(externs);
+  }
+
+  /**
+   * Strip window. or this. from full symbol names. Technically, window. and this. symbols are
+   * tracked separately in the type system from the global symbols, but they largely overlap both in
+   * TS and Closure.
+   */
+  static String normalizeWindowGlobals(String name) {
+    return WINDOW_GLOBAL_PREFIX.matcher(name).replaceFirst("");
+  }
+
+  /** Returns all top scope symbols. */
+  List<TypedVar> getSymbols() {
+    return symbols;
+  }
+
+  /**
+   * Returns the top scope symbols declared in non-extern inputs, in the order of the top scope
+   * rather than sorted, as unprovided types are emitted in that order.
+   */
+  List<TypedVar> getSourceSymbols() {
+    return sourceSymbols;
+  }
+
+  /**
+   * Returns the extern symbols to emit, without prototypes, enum elements, symbols of unknown type
+   * and window. or this. prefixed duplicates of other externs.
+   */
+  List<TypedVar> getExterns() {
+    return externs;
+  }
+
+  /** Returns the names of {@link #getExterns}. */
+  TreeSet<String> getExternNames() {
+    return externNames;
+  }
+
+  /** Returns the name of an extern from {@link #getExterns} without a window. or this. prefix. */
+  String getNormalizedName(TypedVar extern) {
+    String normalizedName = normalizedExternNames.get(extern);
+    return normalizedName != null ? normalizedName : normalizeWindowGlobals(extern.getName());
+  }
+}
@@ -0,0 +1,57 @@
+package com.google.javascript.common;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Replaces files atomically, by writing a temporary file next to them and renaming it into place,
+ * so that readers never observe a partial file.
+ *
+ * <p>Unlike {@link Files#createTempFile}, which creates files only readable by their owner, the
+ * temporary files get the permissions of any new file, i.e. those allowed by the umask. A replaced
+ * file keeps its permissions.
+ */
+public final class AtomicFiles {
+  private AtomicFiles() {}
+
+  /** Creates an empty temporary file in the directory of the target, which must exist. */
+  public static Path createTempFile(Path target) throws IOException {
+    Path parent = target.toAbsolutePath().getParent();
+    while (true) {
+      Path temp =
+          parent.resolve(
+              target.getFileName()
+                  + "."
+                  + Long.toHexString(ThreadLocalRandom.current().nextLong())
+                  + ".tmp");
+      try {
+        Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+            .close();
+        return temp;
+      } catch (FileAlreadyExistsException e) {
+        // Pick another name.
+      }
+    }
+  }
+
+  /** Renames the temporary file to the target, keeping the permissions of an existing target. */
+  public static void moveIntoPlace(Path temp, Path target) throws IOException {
+    try {
+      Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+    } catch (NoSuchFileException | UnsupportedOperationException e) {
+      // A new file, or a file system without POSIX permissions.
+    }
+    try {
+      Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+}
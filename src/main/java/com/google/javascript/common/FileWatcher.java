@@ -0,0 +1,99 @@
+package com.google.javascript.common;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits for changes to a set of files, used by the --watch mode of clutz and gents.
+ *
+ * <p>The parent directories of the files are watched, as editors often save by replacing a file.
+ * Changes are debounced: after the first change, further changes are collected until none arrive
+ * for the debounce period, so that a burst of saves results in a single rebuild.
+ */
+public class FileWatcher implements Closeable {
+  public static final long DEFAULT_DEBOUNCE_MILLIS = 300;
+
+  private final WatchService watchService;
+  private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+  private final long debounceMillis;
+
+  public FileWatcher(long debounceMillis) throws IOException {
+    this.watchService = FileSystems.getDefault().newWatchService();
+    this.debounceMillis = debounceMillis;
+  }
+
+  /** Returns the absolute, normalized paths of the given file names. */
+  public static Set<Path> toPaths(Collection<String> fileNames) {
+    Set<Path> paths = new LinkedHashSet<>();
+    for (String fileName : fileNames) {
+      paths.add(Paths.get(fileName).toAbsolutePath().normalize());
+    }
+    return paths;
+  }
+
+  /**
+   * Blocks until at least one of the given files is created, modified or deleted, and returns all
+   * files that changed until the debounce period passed without further changes.
+   */
+  public Set<Path> awaitChanges(Set<Path> files) throws IOException, InterruptedException {
+    for (Path file : files) {
+      Path dir = file.getParent();
+      if (dir != null && !watchedDirs.containsValue(dir) && dir.toFile().isDirectory()) {
+        watchedDirs.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+      }
+    }
+    Set<Path> changed = new LinkedHashSet<>();
+    while (changed.isEmpty()) {
+      collectChanges(watchService.take(), files, changed);
+    }
+    WatchKey key;
+    while ((key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+      collectChanges(key, files, changed);
+    }
+    return changed;
+  }
+
+  private void collectChanges(WatchKey key, Set<Path> files, Set<Path> changed) {
+    Path dir = watchedDirs.get(key);
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW) {
+        // Events were lost, so any file in the directory may have changed.
+        for (Path file : files) {
+          if (file.getParent().equals(dir)) {
+            changed.add(file);
+          }
+        }
+        continue;
+      }
+      Path file = dir.resolve((Path) event.context());
+      if (files.contains(file)) {
+        changed.add(file);
+      }
+    }
+    if (!key.reset()) {
+      watchedDirs.remove(key);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+  }
+}
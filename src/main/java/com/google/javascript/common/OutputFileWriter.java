@@ -0,0 +1,121 @@
+package com.google.javascript.common;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes output files, skipping files whose content is unchanged so that their mtime is kept and
+ * downstream builds and file watchers are not triggered.
+ *
+ * <p>Existing files are compared by size first and then by digest. Changed files are replaced
+ * through {@link AtomicFiles}, so readers never observe a partial file and permissions are kept.
+ * Large content can be streamed to the temporary file instead, and is then compared to the existing
+ * file on disk. This class is safe to use from multiple threads.
+ */
+public class OutputFileWriter {
+  private static final HashFunction DIGEST = Hashing.sha256();
+
+  private final AtomicInteger writtenCount = new AtomicInteger();
+  private final AtomicInteger skippedCount = new AtomicInteger();
+
+  /** Writes the content of a file, see {@link #write(File, Content)}. */
+  public interface Content {
+    void writeTo(Writer writer) throws IOException;
+  }
+
+  /** Writes the content to the file unless it already has that content. Returns if it wrote. */
+  public boolean write(File file, String content) {
+    byte[] bytes = content.getBytes(UTF_8);
+    try {
+      if (isUnchanged(file, bytes)) {
+        skippedCount.incrementAndGet();
+        return false;
+      }
+      Path temp = createTempFile(file);
+      try {
+        java.nio.file.Files.write(temp, bytes);
+        AtomicFiles.moveIntoPlace(temp, file.toPath());
+      } finally {
+        java.nio.file.Files.deleteIfExists(temp);
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Unable to write to file " + file, e);
+    }
+    writtenCount.incrementAndGet();
+    return true;
+  }
+
+  /**
+   * Like {@link #write(File, String)}, but streams the content to the temporary file instead of
+   * holding it in memory, and compares the temporary file to the existing one.
+   */
+  public boolean write(File file, Content content) {
+    try {
+      Path temp = createTempFile(file);
+      try {
+        try (Writer writer =
+            new BufferedWriter(
+                new OutputStreamWriter(java.nio.file.Files.newOutputStream(temp), UTF_8))) {
+          content.writeTo(writer);
+        }
+        if (isUnchanged(file, temp.toFile())) {
+          skippedCount.incrementAndGet();
+          return false;
+        }
+        AtomicFiles.moveIntoPlace(temp, file.toPath());
+      } finally {
+        java.nio.file.Files.deleteIfExists(temp);
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Unable to write to file " + file, e);
+    }
+    writtenCount.incrementAndGet();
+    return true;
+  }
+
+  private static Path createTempFile(File file) throws IOException {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (!parent.exists() && !parent.mkdirs()) {
+      throw new IllegalArgumentException("Unable to make directories " + parent);
+    }
+    return AtomicFiles.createTempFile(file.toPath());
+  }
+
+  private static boolean isUnchanged(File file, byte[] bytes) throws IOException {
+    if (!file.isFile() || file.length() != bytes.length) {
+      return false;
+    }
+    return Files.asByteSource(file).hash(DIGEST).equals(DIGEST.hashBytes(bytes));
+  }
+
+  private static boolean isUnchanged(File file, File content) throws IOException {
+    if (!file.isFile() || file.length() != content.length()) {
+      return false;
+    }
+    return Files.asByteSource(file).contentEquals(Files.asByteSource(content));
+  }
+
+  public int getWrittenCount() {
+    return writtenCount.get();
+  }
+
+  public int getSkippedCount() {
+    return skippedCount.get();
+  }
+
+  public void report(PrintStream stream) {
+    stream.println(
+        "Wrote " + getWrittenCount() + " files, skipped " + getSkippedCount() + " unchanged files.");
+  }
+}
@@ -0,0 +1,278 @@
+package com.google.javascript.common;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.Files;
+import com.google.gson.GsonBuilder;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records wall time, CPU time, allocated bytes and the peak heap for the phases of a run.
+ *
+ * <p>The peak heap of a phase is the sum of the peak usage of the heap memory pools while it ran.
+ * The pools may peak at different times, so this is an upper bound of the actual high-water mark.
+ * The peaks are reset at the start of every phase, and folded into all running phases when one
+ * starts or ends, so nested phases do not hide the peak of their enclosing phase.
+ *
+ * <p>Phases are grouped by category (e.g. "collectTypedefs"). Categories that are also measured per
+ * item, like "declareNamespace" per provide, report their most expensive items. The disabled
+ * profiler hands out a shared no-op phase, so instrumentation costs nothing when it is off.
+ */
+public class PhaseProfiler {
+  public enum Format {
+    JSON,
+    CHROME_TRACE
+  }
+
+  /** A running phase, recorded when closed. */
+  public interface Phase extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  public static final PhaseProfiler DISABLED = new PhaseProfiler(false);
+
+  /** Number of most expensive items reported per category. */
+  public static final int DEFAULT_TOP_N = 20;
+
+  private static final Phase NO_OP = () -> {};
+
+  private final boolean enabled;
+  private final long startNanos = System.nanoTime();
+  private final List<Event> events = new ArrayList<>();
+  private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+  private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+  private final List<RunningPhase> runningPhases = new ArrayList<>();
+
+  private PhaseProfiler(boolean enabled) {
+    this.enabled = enabled;
+    if (enabled) {
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+          heapPools.add(pool);
+        }
+      }
+    }
+  }
+
+  public static PhaseProfiler create() {
+    return new PhaseProfiler(true);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Starts a phase measured once per run. */
+  public Phase start(String category) {
+    return start(category, category);
+  }
+
+  /** Starts the phase of one item (e.g. a provide or a file) within the given category. */
+  public Phase start(String category, String name) {
+    if (!enabled) {
+      return NO_OP;
+    }
+    return new RunningPhase(category, name);
+  }
+
+  private class RunningPhase implements Phase {
+    private final String category;
+    private final String name;
+    private final long wallStart = System.nanoTime();
+    private final long cpuStart = currentThreadCpuTime();
+    private final long allocatedStart = currentThreadAllocatedBytes();
+    private long peakHeapBytes = 0;
+
+    RunningPhase(String category, String name) {
+      this.category = category;
+      this.name = name;
+      synchronized (runningPhases) {
+        updatePeakHeap();
+        for (MemoryPoolMXBean pool : heapPools) {
+          pool.resetPeakUsage();
+        }
+        runningPhases.add(this);
+      }
+    }
+
+    @Override
+    public void close() {
+      Event event = new Event();
+      event.category = category;
+      event.name = name;
+      event.threadId = Thread.currentThread().getId();
+      event.startNanos = wallStart - startNanos;
+      event.wallNanos = System.nanoTime() - wallStart;
+      event.cpuNanos = currentThreadCpuTime() - cpuStart;
+      event.allocatedBytes = currentThreadAllocatedBytes() - allocatedStart;
+      synchronized (runningPhases) {
+        updatePeakHeap();
+        runningPhases.remove(this);
+      }
+      event.peakHeapBytes = peakHeapBytes;
+      synchronized (events) {
+        events.add(event);
+      }
+    }
+  }
+
+  /** Folds the peak heap since the last reset into all running phases. */
+  private void updatePeakHeap() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : heapPools) {
+      MemoryUsage usage = pool.getPeakUsage();
+      if (usage != null) {
+        peak += usage.getUsed();
+      }
+    }
+    for (RunningPhase phase : runningPhases) {
+      phase.peakHeapBytes = Math.max(phase.peakHeapBytes, peak);
+    }
+  }
+
+  private long currentThreadCpuTime() {
+    return threadBean.isCurrentThreadCpuTimeSupported() ? threadBean.getCurrentThreadCpuTime() : 0;
+  }
+
+  private long currentThreadAllocatedBytes() {
+    if (threadBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+      if (sunThreadBean.isThreadAllocatedMemorySupported()
+          && sunThreadBean.isThreadAllocatedMemoryEnabled()) {
+        return sunThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return 0;
+  }
+
+  private static class Event {
+    String category;
+    String name;
+    long threadId;
+    long startNanos;
+    long wallNanos;
+    long cpuNanos;
+    long allocatedBytes;
+    long peakHeapBytes;
+  }
+
+  /** Totals of one category, or the cost of a single item within a category. */
+  private static class Cost {
+    String name;
+    int count;
+    long wallNanos;
+    long cpuNanos;
+    long allocatedBytes;
+    /** The highest peak heap of the events, not a sum. */
+    long peakHeapBytes;
+
+    Cost(String name) {
+      this.name = name;
+    }
+
+    void add(Event event) {
+      count++;
+      wallNanos += event.wallNanos;
+      cpuNanos += event.cpuNanos;
+      allocatedBytes += event.allocatedBytes;
+      peakHeapBytes = Math.max(peakHeapBytes, event.peakHeapBytes);
+    }
+  }
+
+  private static class Report {
+    List<Cost> phases = new ArrayList<>();
+    Map<String, List<Cost>> top = new LinkedHashMap<>();
+  }
+
+  private List<Event> getEvents() {
+    synchronized (events) {
+      return new ArrayList<>(events);
+    }
+  }
+
+  String toJson(int topN) {
+    Map<String, Cost> totals = new LinkedHashMap<>();
+    Map<String, Map<String, Cost>> items = new LinkedHashMap<>();
+    for (Event event : getEvents()) {
+      if (event.name.equals(event.category)) {
+        totals.computeIfAbsent(event.category, Cost::new).add(event);
+      } else {
+        items
+            .computeIfAbsent(event.category, k -> new LinkedHashMap<>())
+            .computeIfAbsent(event.name, Cost::new)
+            .add(event);
+      }
+    }
+    Report report = new Report();
+    for (Map.Entry<String, Map<String, Cost>> e : items.entrySet()) {
+      // Categories that are only measured per item are totaled over their items.
+      if (!totals.containsKey(e.getKey())) {
+        Cost total = new Cost(e.getKey());
+        for (Cost item : e.getValue().values()) {
+          total.count += item.count;
+          total.wallNanos += item.wallNanos;
+          total.cpuNanos += item.cpuNanos;
+          total.allocatedBytes += item.allocatedBytes;
+          total.peakHeapBytes = Math.max(total.peakHeapBytes, item.peakHeapBytes);
+        }
+        totals.put(e.getKey(), total);
+      }
+    }
+    report.phases.addAll(totals.values());
+    for (Map.Entry<String, Map<String, Cost>> e : items.entrySet()) {
+      List<Cost> costs = new ArrayList<>(e.getValue().values());
+      costs.sort(Comparator.comparingLong((Cost c) -> c.wallNanos).reversed());
+      report.top.put(e.getKey(), new ArrayList<>(costs.subList(0, Math.min(topN, costs.size()))));
+    }
+    return new GsonBuilder().setPrettyPrinting().create().toJson(report);
+  }
+
+  /** Returns the events in the Chrome trace event format, as read by chrome://tracing. */
+  String toChromeTrace() {
+    List<Map<String, Object>> traceEvents = new ArrayList<>();
+    for (Event event : getEvents()) {
+      Map<String, Object> args = new LinkedHashMap<>();
+      args.put("cpu_us", event.cpuNanos / 1000);
+      args.put("allocated_bytes", event.allocatedBytes);
+      args.put("peak_heap_bytes", event.peakHeapBytes);
+      Map<String, Object> traceEvent = new LinkedHashMap<>();
+      traceEvent.put("name", event.name);
+      traceEvent.put("cat", event.category);
+      traceEvent.put("ph", "X");
+      traceEvent.put("ts", event.startNanos / 1000);
+      traceEvent.put("dur", event.wallNanos / 1000);
+      traceEvent.put("pid", 1);
+      traceEvent.put("tid", event.threadId);
+      traceEvent.put("args", args);
+      traceEvents.add(traceEvent);
+    }
+    Map<String, Object> trace = new LinkedHashMap<>();
+    trace.put("traceEvents", traceEvents);
+    trace.put("displayTimeUnit", "ms");
+    return new GsonBuilder().create().toJson(trace);
+  }
+
+  public void write(String fileName, Format format, int topN) {
+    if (!enabled) {
+      return;
+    }
+    String content = format == Format.CHROME_TRACE ? toChromeTrace() : toJson(topN);
+    try {
+      Files.asCharSink(new File(fileName), UTF_8).write(content);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Unable to write to file " + fileName, e);
+    }
+  }
+}
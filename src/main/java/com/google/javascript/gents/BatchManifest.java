@@ -0,0 +1,96 @@
+package com.google.javascript.gents;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Representation of a gents batch manifest file, which describes many independent conversion units
+ * that are converted in a single process.
+ *
+ * <p>The manifest is a JSON list of objects of the form:
+ *
+ * <pre>
+ * [{"sourcesManifest": "foo/sources.txt", "output": "out/foo", "log": "out/foo.json"}, ...]
+ * </pre>
+ *
+ * Instead of "sourcesManifest", a unit may list its files in "convert". "log" is optional.
+ *
+ * <p>A unit is compiled with its own files and the dependencies of the batch, but not with the
+ * files of the other units. A unit that imports files of other units, or further dependencies,
+ * lists them in "dependencies" or "dependenciesManifest".
+ */
+class BatchManifest {
+
+  static class Unit {
+    String sourcesManifest;
+    List<String> convert = new ArrayList<>();
+    String dependenciesManifest;
+    List<String> dependencies = new ArrayList<>();
+    String output;
+    String log;
+  }
+
+  private final List<Unit> units = new ArrayList<>();
+
+  private BatchManifest() {}
+
+  List<Unit> getUnits() {
+    return Collections.unmodifiableList(units);
+  }
+
+  static BatchManifest parseFrom(String fileName) {
+    BatchManifest result = new BatchManifest();
+    try {
+      String manifest = new String(Files.readAllBytes(Paths.get(fileName)), UTF_8);
+      List<Unit> units =
+          new Gson()
+              .fromJson(
+                  manifest,
+                  new TypeToken<List<Unit>>() {
+                    /* empty */
+                  }.getType());
+      for (Unit unit : units) {
+        if (unit.output == null || "-".equals(unit.output)) {
+          throw new IllegalArgumentException("every batch unit needs an output directory");
+        }
+        if (unit.sourcesManifest != null) {
+          if (unit.convert != null && !unit.convert.isEmpty()) {
+            throw new IllegalArgumentException(
+                "batch unit " + unit.output + " has both a sources manifest and convert files");
+          }
+          unit.convert = Files.readAllLines(Paths.get(unit.sourcesManifest), UTF_8);
+        }
+        if (unit.convert == null || unit.convert.isEmpty()) {
+          throw new IllegalArgumentException("batch unit " + unit.output + " has no files");
+        }
+        if (unit.dependenciesManifest != null) {
+          if (unit.dependencies != null && !unit.dependencies.isEmpty()) {
+            throw new IllegalArgumentException(
+                "batch unit "
+                    + unit.output
+                    + " has both a dependencies manifest and dependency files");
+          }
+          unit.dependencies = Files.readAllLines(Paths.get(unit.dependenciesManifest), UTF_8);
+        }
+        if (unit.dependencies == null) {
+          unit.dependencies = new ArrayList<>();
+        }
+        result.units.add(unit);
+      }
+    } catch (NoSuchFileException e) {
+      throw new IllegalArgumentException("batch manifest file not found: " + e.getFile(), e);
+    } catch (IOException e) {
+      throw new RuntimeException("error reading batch manifest file " + fileName, e);
+    }
+    return result;
+  }
+}
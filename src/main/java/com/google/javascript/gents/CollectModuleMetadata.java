@@ -4,6 +4,7 @@ import static com.google.common.base.MoreObjects.firstNonNull;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.javascript.common.PhaseProfiler;
 import com.google.javascript.jscomp.AbstractCompiler;
 import com.google.javascript.jscomp.CompilerPass;
 import com.google.javascript.jscomp.JSError;
@@ -27,6 +28,7 @@ public final class CollectModuleMetadata extends AbstractTopLevelCallback implem
 
   private final AbstractCompiler compiler;
   private final NameUtil nameUtil;
+  private final PhaseProfiler profiler;
 
   private final Set<String> filesToConvert;
   private final Map<String, FileModule> fileToModule = new LinkedHashMap<>();
@@ -57,15 +59,27 @@ public final class CollectModuleMetadata extends AbstractTopLevelCallback implem
     return out;
   }
 
-  CollectModuleMetadata(AbstractCompiler compiler, NameUtil nameUtil, Set<String> filesToConvert) {
+  CollectModuleMetadata(
+      AbstractCompiler compiler,
+      NameUtil nameUtil,
+      Set<String> filesToConvert,
+      PhaseProfiler profiler) {
     this.compiler = compiler;
     this.nameUtil = nameUtil;
     this.filesToConvert = filesToConvert;
+    this.profiler = profiler;
   }
 
   @Override
   public void process(Node externs, Node root) {
-    NodeTraversal.traverse(compiler, root, this);
+    NodeTraversal.traverse(
+        compiler, root, ScriptPhases.wrap(profiler, "CollectModuleMetadata", this));
+  }
+
+  /** Collects the metadata of files that were parsed by another compiler. */
+  void processParsedFiles(AbstractCompiler parsingCompiler, Node root) {
+    NodeTraversal.traverse(
+        parsingCompiler, root, ScriptPhases.wrap(profiler, "CollectModuleMetadata", this));
   }
 
   @Override
@@ -2,6 +2,7 @@ package com.google.javascript.gents;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.javascript.common.PhaseProfiler;
 import com.google.javascript.jscomp.Compiler;
 import com.google.javascript.jscomp.CompilerPass;
 import com.google.javascript.jscomp.NodeTraversal;
@@ -76,10 +77,12 @@ public final class CommentLinkingPass implements CompilerPass {
 
   private final Compiler compiler;
   private final NodeComments nodeComments;
+  private final PhaseProfiler profiler;
 
-  CommentLinkingPass(Compiler compiler) {
+  CommentLinkingPass(Compiler compiler, PhaseProfiler profiler) {
     this.compiler = compiler;
     this.nodeComments = new NodeComments();
+    this.profiler = profiler;
   }
 
   public NodeComments getComments() {
@@ -90,11 +93,14 @@ public final class CommentLinkingPass implements CompilerPass {
   public void process(Node externs, Node root) {
     for (Node script : root.children()) {
       if (script.isScript()) {
-        // Note: this doesn't actually copy the list since the underlying list is already an
-        // immutable list.
-        ImmutableList<Comment> comments =
-            ImmutableList.copyOf(compiler.getComments(script.getSourceFileName()));
-        NodeTraversal.traverse(compiler, script, new LinkCommentsForOneFile(comments));
+        try (PhaseProfiler.Phase p =
+            profiler.start("CommentLinkingPass", script.getSourceFileName())) {
+          // Note: this doesn't actually copy the list since the underlying list is already an
+          // immutable list.
+          ImmutableList<Comment> comments =
+              ImmutableList.copyOf(compiler.getComments(script.getSourceFileName()));
+          NodeTraversal.traverse(compiler, script, new LinkCommentsForOneFile(comments));
+        }
       }
     }
   }
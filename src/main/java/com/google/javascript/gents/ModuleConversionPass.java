@@ -6,6 +6,7 @@ import static com.google.common.base.Preconditions.checkState;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
+import com.google.javascript.common.PhaseProfiler;
 import com.google.javascript.gents.CollectModuleMetadata.FileModule;
 import com.google.javascript.jscomp.AbstractCompiler;
 import com.google.javascript.jscomp.CompilerPass;
@@ -37,6 +38,7 @@ public final class ModuleConversionPass implements CompilerPass {
   private final PathUtil pathUtil;
   private final NameUtil nameUtil;
   private final NodeComments nodeComments;
+  private final PhaseProfiler profiler;
 
   private final Map<String, FileModule> fileToModule;
   private final Map<String, FileModule> namespaceToModule;
@@ -76,7 +78,8 @@ public final class ModuleConversionPass implements CompilerPass {
       Map<String, FileModule> fileToModule,
       Map<String, FileModule> namespaceToModule,
       NodeComments nodeComments,
-      String alreadyConvertedPrefix) {
+      String alreadyConvertedPrefix,
+      PhaseProfiler profiler) {
     this.compiler = compiler;
     this.pathUtil = pathUtil;
     this.nameUtil = nameUtil;
@@ -85,14 +88,20 @@ public final class ModuleConversionPass implements CompilerPass {
     this.fileToModule = fileToModule;
     this.namespaceToModule = namespaceToModule;
     this.alreadyConvertedPrefix = alreadyConvertedPrefix;
+    this.profiler = profiler;
   }
 
   @Override
   public void process(Node externs, Node root) {
-    NodeTraversal.traverse(compiler, root, new ModuleExportConverter());
-    NodeTraversal.traverse(compiler, root, new DestructuringCollector());
-    NodeTraversal.traverse(compiler, root, new ModuleImportConverter());
-    NodeTraversal.traverse(compiler, root, new ModuleImportRewriter());
+    traverse(root, new ModuleExportConverter());
+    traverse(root, new DestructuringCollector());
+    traverse(root, new ModuleImportConverter());
+    traverse(root, new ModuleImportRewriter());
+  }
+
+  private void traverse(Node root, NodeTraversal.Callback callback) {
+    NodeTraversal.traverse(
+        compiler, root, ScriptPhases.wrap(profiler, "ModuleConversionPass", callback));
   }
 
   /**
@@ -311,23 +320,45 @@ public final class ModuleConversionPass implements CompilerPass {
 
   /** Rewrites variable names used in the file to correspond to the newly imported symbols. */
   private class ModuleImportRewriter extends AbstractPreOrderCallback {
+    /** The file whose imports are in rewriteIndex. */
+    @Nullable private String indexedFile = null;
+    /** Imported names of indexedFile to their local names, or null if it has no imports. */
+    @Nullable private QualifiedNameTrie<String> rewriteIndex = null;
+
     @Override
     public boolean shouldTraverse(NodeTraversal t, Node n, Node parent) {
       // Rewrite all imported variable name usages
       if (n.isName() || n.isGetProp()) {
-        if (!valueRewrite.containsRow(n.getSourceFileName())) {
+        QualifiedNameTrie<String> index = getRewriteIndex(n.getSourceFileName());
+        if (index == null) {
           return true;
         }
 
-        Map<String, String> rewriteMap = valueRewrite.rowMap().get(n.getSourceFileName());
-        String importedNamespace = nameUtil.findLongestNamePrefix(n, rewriteMap.keySet());
-        if (importedNamespace != null) {
-          nameUtil.replacePrefixInName(n, importedNamespace, rewriteMap.get(importedNamespace));
+        QualifiedNameTrie.Match<String> match = index.findLongestPrefix(n);
+        if (match != null) {
+          nameUtil.replaceName(match.node, match.value);
           return false;
         }
+        // No part of a qualified name can match if the whole name did not.
+        return !n.isQualifiedName();
       }
       return true;
     }
+
+    @Nullable
+    private QualifiedNameTrie<String> getRewriteIndex(@Nullable String fileName) {
+      if (fileName == null || !valueRewrite.containsRow(fileName)) {
+        return null;
+      }
+      if (!fileName.equals(indexedFile)) {
+        indexedFile = fileName;
+        rewriteIndex = new QualifiedNameTrie<>();
+        for (Map.Entry<String, String> rewrite : valueRewrite.row(fileName).entrySet()) {
+          rewriteIndex.put(rewrite.getKey(), rewrite.getValue());
+        }
+      }
+      return rewriteIndex;
+    }
   }
 
   /** A single statement containing {@code goog.require(...)}. */
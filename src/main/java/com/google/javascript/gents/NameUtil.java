@@ -67,14 +67,19 @@ class NameUtil {
    */
   void replacePrefixInName(Node name, String prefix, String newPrefix) {
     if (name.matchesQualifiedName(prefix)) {
-      Node newName = NodeUtil.newQName(compiler, newPrefix);
-      JSDocInfo jsdoc = NodeUtil.getBestJSDocInfo(name);
-      newName.setJSDocInfo(jsdoc);
-      name.getParent().replaceChild(name, newName);
+      replaceName(name, newPrefix);
     } else {
       if (name.isGetProp()) {
         replacePrefixInName(name.getFirstChild(), prefix, newPrefix);
       }
     }
   }
+
+  /** In-place replaces a name node, keeping its JSDoc. */
+  void replaceName(Node name, String newName) {
+    Node newNameNode = NodeUtil.newQName(compiler, newName);
+    JSDocInfo jsdoc = NodeUtil.getBestJSDocInfo(name);
+    newNameNode.setJSDocInfo(jsdoc);
+    name.getParent().replaceChild(name, newNameNode);
+  }
 }
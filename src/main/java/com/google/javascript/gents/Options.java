@@ -6,6 +6,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
+import com.google.javascript.common.PhaseProfiler;
 import com.google.javascript.jscomp.CheckLevel;
 import com.google.javascript.jscomp.CompilerOptions;
 import com.google.javascript.jscomp.CompilerOptions.LanguageMode;
@@ -16,6 +17,7 @@ import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -51,6 +53,53 @@ public class Options {
   )
   String moduleRewriteLog = null;
 
+  @Option(
+    name = "--profile",
+    usage =
+        "output wall time, CPU time and allocated bytes per pass, and the most expensive files of"
+            + " each pass, to this location",
+    metaVar = "PROFILE"
+  )
+  String profileFile = null;
+
+  @Option(
+    name = "--profileFormat",
+    usage = "format of the --profile output. Options: JSON, CHROME_TRACE"
+  )
+  PhaseProfiler.Format profileFormat = PhaseProfiler.Format.JSON;
+
+  @Option(
+    name = "--watch",
+    usage =
+        "keep running and convert again whenever an input file or manifest changes. When only"
+            + " files being converted change, only those files are written again"
+  )
+  boolean watch = false;
+
+  @Option(
+    name = "--batchManifest",
+    usage =
+        "JSON file listing many conversion units (sourcesManifest or convert, output, log,"
+            + " dependenciesManifest or dependencies). The units are converted concurrently, each"
+            + " with its own files, its dependencies and the dependencies of the batch as sources",
+    metaVar = "file.json"
+  )
+  String batchManifest = null;
+
+  @Option(
+    name = "--batchJobs",
+    usage = "number of units converted concurrently with --batchManifest. Default: one per CPU"
+  )
+  int batchJobs = Runtime.getRuntime().availableProcessors();
+
+  @Option(
+    name = "--parseOnlyDependencies",
+    usage =
+        "only parse dependencies that are not converted and collect their module metadata,"
+            + " instead of compiling them with the files being converted"
+  )
+  boolean parseOnlyDependencies = false;
+
   @Option(
     name = "--dependenciesManifest",
     usage =
@@ -114,6 +163,9 @@ public class Options {
 
   Set<String> srcFiles = new LinkedHashSet<>();
   Map<String, String> externsMap = null;
+  BatchManifest batch = null;
+  /** The dependencies shared by all units of the batch manifest. */
+  private final Set<String> batchDependencies = new LinkedHashSet<>();
 
   CompilerOptions getCompilerOptions() {
     final CompilerOptions options = new CompilerOptions();
@@ -151,6 +203,20 @@ public class Options {
     return options;
   }
 
+  /**
+   * Returns the options to parse dependencies with --parseOnlyDependencies. Dependencies are never
+   * printed, so they do not need JSDoc descriptions or detailed source positions.
+   */
+  CompilerOptions getDependencyCompilerOptions() {
+    final CompilerOptions options = new CompilerOptions();
+    options.setLanguage(CompilerOptions.LanguageMode.ECMASCRIPT_NEXT);
+    options.setLanguageOut(LanguageMode.ECMASCRIPT6_TYPED);
+    options.skipAllCompilerPasses();
+    options.setChecksOnly(true);
+    options.clearConformanceConfigs();
+    return options;
+  }
+
   private Map<String, String> getExternsMap() throws IOException {
     if (this.externsMapFile != null) {
       Type mapType =
@@ -201,6 +267,26 @@ public class Options {
       }
     }
 
+    if (batchManifest != null) {
+      // Units are converted concurrently and would overwrite each other's profile.
+      if (!filesToConvert.isEmpty() || watch || profileFile != null) {
+        throw new CmdLineException(
+            parser,
+            "Don't specify --batchManifest with \"--convert\", --sourcesManifest, --watch or"
+                + " --profile.");
+      }
+      try {
+        batch = BatchManifest.parseFrom(batchManifest);
+      } catch (IllegalArgumentException e) {
+        throw new CmdLineException(parser, e.getMessage(), e);
+      }
+      batchDependencies.addAll(srcFiles);
+      for (BatchManifest.Unit unit : batch.getUnits()) {
+        srcFiles.addAll(unit.convert);
+        srcFiles.addAll(unit.dependencies);
+      }
+    }
+
     srcFiles.addAll(filesToConvert);
 
     if (srcFiles.isEmpty()) {
@@ -214,6 +300,42 @@ public class Options {
     }
   }
 
+  /**
+   * Returns the options to convert one unit of the batch manifest. The unit is compiled with its
+   * own files and dependencies and the dependencies of the batch, so that the files of unrelated
+   * units are neither compiled again for every unit nor change its output.
+   */
+  Options forBatchUnit(BatchManifest.Unit unit) {
+    Options result = new Options();
+    result.output = unit.output;
+    result.moduleRewriteLog = unit.log;
+    result.filesToConvert = new ArrayList<>(unit.convert);
+    result.srcFiles.addAll(batchDependencies);
+    result.srcFiles.addAll(unit.dependencies);
+    result.srcFiles.addAll(unit.convert);
+    result.root = root;
+    result.debug = debug;
+    result.externs = externs;
+    result.externsMapFile = externsMapFile;
+    result.externsMap = externsMap;
+    result.alreadyConvertedPrefix = alreadyConvertedPrefix;
+    result.absolutePathPrefix = absolutePathPrefix;
+    result.parseOnlyDependencies = parseOnlyDependencies;
+    return result;
+  }
+
+  /** Returns the files whose changes require converting again in --watch mode. */
+  List<String> getWatchedFiles() {
+    List<String> files = new ArrayList<>(srcFiles);
+    files.addAll(externs);
+    for (String file : Arrays.asList(dependenciesManifest, sourcesManifest, externsMapFile)) {
+      if (file != null) {
+        files.add(file);
+      }
+    }
+    return files;
+  }
+
   Options() {
     externsMap = ImmutableMap.of();
   }
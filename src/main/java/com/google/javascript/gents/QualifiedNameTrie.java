@@ -0,0 +1,86 @@
+package com.google.javascript.gents;
+
+import com.google.common.base.Splitter;
+import com.google.javascript.rhino.Node;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Maps qualified names to values, keyed by the segments of the names. Finds the longest name that
+ * is a prefix of a NAME or GETPROP chain by walking the nodes of the chain, without building the
+ * dotted name of every prefix.
+ */
+final class QualifiedNameTrie<V> {
+  private static final Splitter DOT_SPLITTER = Splitter.on('.');
+
+  /** The longest name in the trie that is a prefix of a node, and the node of that prefix. */
+  static final class Match<V> {
+    final Node node;
+    final V value;
+
+    private Match(Node node, V value) {
+      this.node = node;
+      this.value = value;
+    }
+  }
+
+  private final Map<String, QualifiedNameTrie<V>> children = new HashMap<>();
+  @Nullable private V value;
+
+  void put(String qualifiedName, V value) {
+    QualifiedNameTrie<V> trie = this;
+    for (String segment : DOT_SPLITTER.split(qualifiedName)) {
+      QualifiedNameTrie<V> child = trie.children.get(segment);
+      if (child == null) {
+        child = new QualifiedNameTrie<>();
+        trie.children.put(segment, child);
+      }
+      trie = child;
+    }
+    trie.value = value;
+  }
+
+  /** Returns the longest name in the trie that is a prefix of the qualified name n, or null. */
+  @Nullable
+  Match<V> findLongestPrefix(Node n) {
+    Node root = n;
+    int depth = 0;
+    while (root.isGetProp()) {
+      root = root.getFirstChild();
+      depth++;
+    }
+    String rootSegment = getRootSegment(root);
+    QualifiedNameTrie<V> trie = rootSegment == null ? null : children.get(rootSegment);
+    if (trie == null) {
+      return null;
+    }
+    Node prefix = root;
+    Match<V> match = trie.value != null ? new Match<>(prefix, trie.value) : null;
+    for (int i = 0; i < depth; i++) {
+      prefix = prefix.getParent();
+      trie = trie.children.get(prefix.getLastChild().getString());
+      if (trie == null) {
+        break;
+      }
+      if (trie.value != null) {
+        match = new Match<>(prefix, trie.value);
+      }
+    }
+    return match;
+  }
+
+  /** Returns the first segment of a qualified name node, as in {@link Node#getQualifiedName}. */
+  @Nullable
+  private static String getRootSegment(Node n) {
+    if (n.isName()) {
+      String name = n.getString();
+      return name.isEmpty() ? null : name;
+    } else if (n.isThis()) {
+      return "this";
+    } else if (n.isSuper()) {
+      return "super";
+    }
+    return null;
+  }
+}
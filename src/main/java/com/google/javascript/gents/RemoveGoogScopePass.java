@@ -2,6 +2,7 @@ package com.google.javascript.gents;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.javascript.common.PhaseProfiler;
 import com.google.javascript.jscomp.AbstractCompiler;
 import com.google.javascript.jscomp.CompilerPass;
 import com.google.javascript.jscomp.NodeTraversal;
@@ -23,16 +24,19 @@ import javax.annotation.Nullable;
 public final class RemoveGoogScopePass extends AbstractTopLevelCallback implements CompilerPass {
 
   private final AbstractCompiler compiler;
+  private final PhaseProfiler profiler;
   private final Set<String> providedNamespaces = new HashSet<>();
   private final Map<String, String> aliasToProvidedNamespace = new HashMap<>();
 
-  RemoveGoogScopePass(AbstractCompiler compiler) {
+  RemoveGoogScopePass(AbstractCompiler compiler, PhaseProfiler profiler) {
     this.compiler = compiler;
+    this.profiler = profiler;
   }
 
   @Override
   public void process(Node externs, Node root) {
-    NodeTraversal.traverse(compiler, root, this);
+    NodeTraversal.traverse(
+        compiler, root, ScriptPhases.wrap(profiler, "RemoveGoogScopePass", this));
   }
 
   @Override
@@ -0,0 +1,58 @@
+package com.google.javascript.gents;
+
+import com.google.javascript.common.PhaseProfiler;
+import com.google.javascript.jscomp.NodeTraversal;
+import com.google.javascript.jscomp.NodeTraversal.Callback;
+import com.google.javascript.rhino.Node;
+
+/**
+ * Attributes the time of a traversal to the scripts it visits: a phase of the pass is started when
+ * the traversal enters a script and closed when it leaves it. The traversal itself is unchanged.
+ */
+final class ScriptPhases implements Callback {
+  private final PhaseProfiler profiler;
+  private final String passName;
+  private final Callback callback;
+  private PhaseProfiler.Phase scriptPhase;
+
+  private ScriptPhases(PhaseProfiler profiler, String passName, Callback callback) {
+    this.profiler = profiler;
+    this.passName = passName;
+    this.callback = callback;
+  }
+
+  /** Returns the callback itself when profiling is off. */
+  static Callback wrap(PhaseProfiler profiler, String passName, Callback callback) {
+    return profiler.isEnabled() ? new ScriptPhases(profiler, passName, callback) : callback;
+  }
+
+  @Override
+  public boolean shouldTraverse(NodeTraversal t, Node n, Node parent) {
+    if (n.isScript()) {
+      scriptPhase = profiler.start(passName, n.getSourceFileName());
+    }
+    boolean traverse = callback.shouldTraverse(t, n, parent);
+    if (!traverse && n.isScript()) {
+      closeScriptPhase();
+    }
+    return traverse;
+  }
+
+  @Override
+  public void visit(NodeTraversal t, Node n, Node parent) {
+    try {
+      callback.visit(t, n, parent);
+    } finally {
+      if (n.isScript()) {
+        closeScriptPhase();
+      }
+    }
+  }
+
+  private void closeScriptPhase() {
+    if (scriptPhase != null) {
+      scriptPhase.close();
+      scriptPhase = null;
+    }
+  }
+}
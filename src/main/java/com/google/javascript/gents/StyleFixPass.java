@@ -4,6 +4,7 @@ import static com.google.javascript.rhino.TypeDeclarationsIR.anyType;
 import static com.google.javascript.rhino.TypeDeclarationsIR.arrayType;
 
 import com.google.common.collect.Iterables;
+import com.google.javascript.common.PhaseProfiler;
 import com.google.javascript.jscomp.AbstractCompiler;
 import com.google.javascript.jscomp.CompilerPass;
 import com.google.javascript.jscomp.NodeTraversal;
@@ -17,15 +18,17 @@ public final class StyleFixPass extends AbstractPostOrderCallback implements Com
 
   private final AbstractCompiler compiler;
   private final NodeComments nodeComments;
+  private final PhaseProfiler profiler;
 
-  StyleFixPass(AbstractCompiler compiler, NodeComments nodeComments) {
+  StyleFixPass(AbstractCompiler compiler, NodeComments nodeComments, PhaseProfiler profiler) {
     this.compiler = compiler;
     this.nodeComments = nodeComments;
+    this.profiler = profiler;
   }
 
   @Override
   public void process(Node externs, Node root) {
-    NodeTraversal.traverse(compiler, root, this);
+    NodeTraversal.traverse(compiler, root, ScriptPhases.wrap(profiler, "StyleFixPass", this));
   }
 
   @Override
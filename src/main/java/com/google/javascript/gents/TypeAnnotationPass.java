@@ -21,6 +21,7 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Table;
+import com.google.javascript.common.PhaseProfiler;
 import com.google.javascript.gents.CollectModuleMetadata.FileModule;
 import com.google.javascript.jscomp.AbstractCompiler;
 import com.google.javascript.jscomp.CompilerPass;
@@ -56,6 +57,7 @@ public final class TypeAnnotationPass implements CompilerPass {
   private final PathUtil pathUtil;
   private final NameUtil nameUtil;
   private final NodeComments nodeComments;
+  private final PhaseProfiler profiler;
 
   /** symbolName -> fileModule */
   private final Map<String, FileModule> symbolToModule;
@@ -73,7 +75,8 @@ public final class TypeAnnotationPass implements CompilerPass {
       Map<String, FileModule> symbolMap,
       Table<String, String, String> typeRewrite,
       NodeComments nodeComments,
-      Map<String, String> externsMap) {
+      Map<String, String> externsMap,
+      PhaseProfiler profiler) {
     this.compiler = compiler;
     this.pathUtil = pathUtil;
     this.nameUtil = nameUtil;
@@ -82,17 +85,26 @@ public final class TypeAnnotationPass implements CompilerPass {
     this.symbolToModule = new HashMap<>(symbolMap);
     this.typeRewrite = HashBasedTable.create(typeRewrite);
     this.externsMap = externsMap;
+    this.profiler = profiler;
   }
 
   @Override
   public void process(Node externs, Node root) {
-    NodeTraversal.traverse(compiler, root, new TypeAnnotationConverter());
-    NodeTraversal.traverse(compiler, root, new AccessModifierConverter());
+    traverse(root, new TypeAnnotationConverter());
+    traverse(root, new AccessModifierConverter());
     for (Node script : root.children()) {
-      addTypeOnlyImports(script);
+      try (PhaseProfiler.Phase p =
+          profiler.start("TypeAnnotationPass", script.getSourceFileName())) {
+        addTypeOnlyImports(script);
+      }
     }
   }
 
+  private void traverse(Node root, NodeTraversal.Callback callback) {
+    NodeTraversal.traverse(
+        compiler, root, ScriptPhases.wrap(profiler, "TypeAnnotationPass", callback));
+  }
+
   /** Annotates variables and functions with their corresponding TypeScript type. */
   private class TypeAnnotationConverter extends AbstractPostOrderCallback {
     @Override
@@ -3,6 +3,7 @@ package com.google.javascript.gents;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
+import com.google.javascript.common.PhaseProfiler;
 import com.google.javascript.gents.CollectModuleMetadata.FileModule;
 import com.google.javascript.jscomp.AbstractCompiler;
 import com.google.javascript.jscomp.CompilerPass;
@@ -32,6 +33,7 @@ public final class TypeConversionPass implements CompilerPass {
   private final AbstractCompiler compiler;
   private final NodeComments nodeComments;
   private final CollectModuleMetadata modulePrepass;
+  private final PhaseProfiler profiler;
   private Map<String, Node> types;
   /**
    * typesToRename is an <oldName, newName> map typesToFilename is an <oldName, definedFromFile> map
@@ -42,10 +44,14 @@ public final class TypeConversionPass implements CompilerPass {
   private Map<String, String> typesToFilename;
 
   TypeConversionPass(
-      AbstractCompiler compiler, CollectModuleMetadata modulePrepass, NodeComments nodeComments) {
+      AbstractCompiler compiler,
+      CollectModuleMetadata modulePrepass,
+      NodeComments nodeComments,
+      PhaseProfiler profiler) {
     this.compiler = compiler;
     this.modulePrepass = modulePrepass;
     this.nodeComments = nodeComments;
+    this.profiler = profiler;
     this.types = new LinkedHashMap<>();
     this.typesToRename = new LinkedHashMap<>();
     this.typesToFilename = new LinkedHashMap<>();
@@ -58,12 +64,15 @@ public final class TypeConversionPass implements CompilerPass {
     for (Node child : root.children()) {
       // We convert each file independently to avoid merging class methods from different files.
       if (child.isScript()) {
-        this.types = new LinkedHashMap<>();
-        NodeTraversal.traverse(compiler, child, new TypeConverter());
-        NodeTraversal.traverse(compiler, child, new TypeMemberConverter());
-        NodeTraversal.traverse(compiler, child, new FieldOnThisConverter());
-        NodeTraversal.traverse(compiler, child, new InheritanceConverter());
-        NodeTraversal.traverse(compiler, child, new EnumConverter());
+        try (PhaseProfiler.Phase p =
+            profiler.start("TypeConversionPass", child.getSourceFileName())) {
+          this.types = new LinkedHashMap<>();
+          NodeTraversal.traverse(compiler, child, new TypeConverter());
+          NodeTraversal.traverse(compiler, child, new TypeMemberConverter());
+          NodeTraversal.traverse(compiler, child, new FieldOnThisConverter());
+          NodeTraversal.traverse(compiler, child, new InheritanceConverter());
+          NodeTraversal.traverse(compiler, child, new EnumConverter());
+        }
       }
     }
     convertTypeAlias();
@@ -2,9 +2,14 @@ package com.google.javascript.gents;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.common.base.Joiner;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 import com.google.common.io.ByteSource;
 import com.google.common.io.Files;
+import com.google.javascript.common.FileWatcher;
+import com.google.javascript.common.OutputFileWriter;
+import com.google.javascript.common.PhaseProfiler;
 import com.google.javascript.jscomp.CodeConsumer;
 import com.google.javascript.jscomp.CodeGenerator;
 import com.google.javascript.jscomp.CodePrinter;
@@ -12,24 +17,35 @@ import com.google.javascript.jscomp.CodePrinter.Builder.CodeGeneratorFactory;
 import com.google.javascript.jscomp.CodePrinter.Format;
 import com.google.javascript.jscomp.Compiler;
 import com.google.javascript.jscomp.CompilerOptions;
+import com.google.javascript.jscomp.CompilerPass;
 import com.google.javascript.jscomp.DiagnosticType;
 import com.google.javascript.jscomp.ErrorFormat;
 import com.google.javascript.jscomp.JSError;
 import com.google.javascript.jscomp.SourceFile;
 import com.google.javascript.rhino.Node;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.kohsuke.args4j.CmdLineException;
 
 /**
@@ -70,20 +86,139 @@ public class TypeScriptGenerator {
       System.err.println();
       System.exit(1);
     }
-    TypeScriptGenerator generator = null;
+    if (options.watch) {
+      watch(args, options);
+    }
+    if (options.batch != null) {
+      System.exit(generateBatch(options));
+    }
+    System.exit(generate(options, Sets.newLinkedHashSet(options.filesToConvert)));
+  }
+
+  /**
+   * Converts the units of the batch manifest on a pool of threads and returns the process exit
+   * code. Every unit has its own compiler, as a Closure compiler can neither be shared between
+   * threads nor reused, which only compiles the files of the unit and its dependencies. All sources
+   * are read only once.
+   */
+  static int generateBatch(Options options) {
+    Map<String, String> sourceContents = new HashMap<>();
+    try {
+      for (String fileName : Iterables.concat(options.srcFiles, options.externs)) {
+        sourceContents.put(fileName, Files.asCharSource(new File(fileName), UTF_8).read());
+      }
+    } catch (IOException e) {
+      e.printStackTrace(System.err);
+      System.err.println("Unable to read sources, exiting.");
+      return 3;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, options.batchJobs));
+    try {
+      List<Future<Integer>> results = new ArrayList<>();
+      for (BatchManifest.Unit unit : options.batch.getUnits()) {
+        Options unitOptions = options.forBatchUnit(unit);
+        results.add(executor.submit(() -> generateBatchUnit(unitOptions, sourceContents)));
+      }
+      int exitCode = 0;
+      for (Future<Integer> result : results) {
+        exitCode = Math.max(exitCode, result.get());
+      }
+      return exitCode;
+    } catch (InterruptedException | ExecutionException e) {
+      e.printStackTrace(System.err);
+      System.err.println("Uncaught exception in gents, exiting.");
+      return 3;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Converts one unit of a batch and returns its exit code. Diagnostics are buffered and printed
+   * when the unit is done, so that the output of concurrent units does not interleave.
+   */
+  private static int generateBatchUnit(Options options, Map<String, String> sourceContents) {
+    ByteArrayOutputStream errors = new ByteArrayOutputStream();
+    PrintStream errStream = new PrintStream(errors, true);
+    int exitCode = 0;
     try {
-      generator = new TypeScriptGenerator(options);
-      generator.generateTypeScript();
+      TypeScriptGenerator generator = new TypeScriptGenerator(options);
+      generator.sourceContents = sourceContents;
+      generator.setErrorStream(errStream);
+      generator.generateTypeScript(Sets.newLinkedHashSet(options.filesToConvert));
+      if (generator.hasErrors()) {
+        exitCode = 2;
+      }
+    } catch (Exception e) {
+      e.printStackTrace(errStream);
+      errStream.println("Uncaught exception in gents while converting " + options.output + ".");
+      exitCode = 3;
+    }
+    if (errors.size() > 0) {
+      synchronized (System.err) {
+        System.err.println("Converting " + options.output + ":");
+        System.err.print(new String(errors.toByteArray(), UTF_8));
+      }
+    }
+    return exitCode;
+  }
+
+  /** Converts the files to emit and returns the process exit code. */
+  static int generate(Options options, Set<String> filesToEmit) {
+    try {
+      TypeScriptGenerator generator = new TypeScriptGenerator(options);
+      generator.generateTypeScript(filesToEmit);
       if (generator.hasErrors()) {
         // Already reported through the print stream.
-        System.exit(2);
+        return 2;
       }
     } catch (Exception e) {
       e.printStackTrace(System.err);
       System.err.println("Uncaught exception in gents, exiting.");
+      return 3;
+    }
+    return 0;
+  }
+
+  /**
+   * Converts again whenever one of the watched inputs changes, until the process is killed. The
+   * Closure compiler cannot be reused for a second compilation, so every iteration compiles and
+   * converts all sources again. When only files being converted changed, only the changed files
+   * are printed and written.
+   */
+  private static void watch(String[] args, Options options) {
+    generate(options, Sets.newLinkedHashSet(options.filesToConvert));
+    try (FileWatcher watcher = new FileWatcher(FileWatcher.DEFAULT_DEBOUNCE_MILLIS)) {
+      while (true) {
+        Set<Path> changed = watcher.awaitChanges(FileWatcher.toPaths(options.getWatchedFiles()));
+        Options previous = options;
+        try {
+          options = new Options(args);
+        } catch (CmdLineException e) {
+          System.err.println(e.getMessage());
+          continue;
+        }
+        Set<String> filesToEmit = new LinkedHashSet<>();
+        for (String file : options.filesToConvert) {
+          if (changed.contains(Paths.get(file).toAbsolutePath().normalize())) {
+            filesToEmit.add(file);
+          }
+        }
+        boolean onlyConvertedFilesChanged =
+            filesToEmit.size() == changed.size()
+                && options.getWatchedFiles().equals(previous.getWatchedFiles());
+        if (!onlyConvertedFilesChanged) {
+          filesToEmit = Sets.newLinkedHashSet(options.filesToConvert);
+        }
+        System.err.println("Converting again: " + Joiner.on(", ").join(filesToEmit));
+        generate(options, filesToEmit);
+      }
+    } catch (IOException | InterruptedException e) {
+      e.printStackTrace(System.err);
+      System.err.println("Unable to watch input files, exiting.");
       System.exit(3);
     }
-    System.exit(0);
   }
 
   private final Options opts;
@@ -91,19 +226,28 @@ public class TypeScriptGenerator {
 
   final PathUtil pathUtil;
   private final NameUtil nameUtil;
+  private PrintStream errStream;
   private GentsErrorManager errorManager;
+  /** Reports the errors of dependencies that were only parsed, null if there were none. */
+  private GentsErrorManager dependencyErrorManager;
+  private final PhaseProfiler profiler;
+  private final OutputFileWriter outputWriter = new OutputFileWriter();
+  /** Contents of source files that were already read, by file name. */
+  private Map<String, String> sourceContents = Collections.emptyMap();
 
   TypeScriptGenerator(Options opts) {
     this.opts = opts;
     this.compiler = new Compiler();
     compiler.disableThreads();
     setErrorStream(System.err);
+    this.profiler = opts.profileFile != null ? PhaseProfiler.create() : PhaseProfiler.DISABLED;
 
     this.pathUtil = new PathUtil(opts.root, opts.absolutePathPrefix);
     this.nameUtil = new NameUtil(compiler);
   }
 
   void setErrorStream(PrintStream errStream) {
+    this.errStream = errStream;
     errorManager =
         new GentsErrorManager(
             errStream, ErrorFormat.MULTILINE.toFormatter(compiler, true), opts.debug);
@@ -111,45 +255,42 @@ public class TypeScriptGenerator {
   }
 
   public boolean hasErrors() {
-    return compiler.getErrorManager().getErrorCount() > 0;
+    return compiler.getErrorManager().getErrorCount() > 0
+        || (dependencyErrorManager != null && dependencyErrorManager.getErrorCount() > 0);
   }
 
-  private void generateTypeScript() {
+  private void generateTypeScript(Set<String> filesToEmit) {
     List<SourceFile> srcFiles = getFiles(opts.srcFiles);
     List<SourceFile> externFiles = getFiles(opts.externs);
     Set<String> filesToConvert = Sets.newLinkedHashSet(opts.filesToConvert);
 
-    GentsResult result = generateTypeScript(filesToConvert, srcFiles, externFiles);
-    Map<String, String> resultFileMap = result.sourceFileMap;
-
-    for (String filename : filesToConvert) {
-      String relativePath = pathUtil.getRelativePath(".", filename);
-      String filepath = pathUtil.getFilePathWithoutExtension(relativePath);
-      String tsCode = resultFileMap.get(filepath);
-      if ("-".equals(opts.output)) {
-        System.out.println("========================================");
-        System.out.println("File: " + relativePath);
-        System.out.println("========================================");
-        System.out.println(tsCode);
-      } else {
-        String tsFilename = pathUtil.removeExtension(relativePath) + ".ts";
-        File output = new File(new File(opts.output), tsFilename);
-        if (!output.getParentFile().exists() && !output.getParentFile().mkdirs()) {
-          throw new IllegalArgumentException("Unable to make directories " + output.getParent());
-        }
-        try {
-          Files.asCharSink(output, UTF_8).write(tsCode);
-        } catch (IOException e) {
-          throw new IllegalArgumentException("Unable to write to file " + output.getName(), e);
-        }
-      }
+    // Files are written as soon as they are converted, so their code is not kept in memory and a
+    // failure late in a large batch does not lose the files converted before it.
+    String moduleRewriteLog =
+        generateTypeScript(
+            filesToConvert, filesToEmit, srcFiles, externFiles, this::writeTypeScript);
+    if (opts.moduleRewriteLog != null) {
+      outputWriter.write(new File(opts.moduleRewriteLog), moduleRewriteLog);
     }
-    try {
-      if (opts.moduleRewriteLog != null) {
-        Files.asCharSink(new File(opts.moduleRewriteLog), UTF_8).write(result.moduleRewriteLog);
-      }
-    } catch (IOException e) {
-      throw new IllegalArgumentException("Unable to write to file " + opts.moduleRewriteLog, e);
+    if (opts.debug) {
+      outputWriter.report(System.err);
+    }
+    if (opts.profileFile != null) {
+      profiler.write(opts.profileFile, opts.profileFormat, PhaseProfiler.DEFAULT_TOP_N);
+    }
+  }
+
+  private void writeTypeScript(String sourceFileName, String tsCode) {
+    String relativePath = pathUtil.getRelativePath(".", sourceFileName);
+    if ("-".equals(opts.output)) {
+      System.out.println("========================================");
+      System.out.println("File: " + relativePath);
+      System.out.println("========================================");
+      System.out.println(tsCode);
+    } else {
+      String tsFilename = pathUtil.removeExtension(relativePath) + ".ts";
+      File output = new File(new File(opts.output), tsFilename);
+      outputWriter.write(output, tsCode);
     }
   }
 
@@ -158,25 +299,64 @@ public class TypeScriptGenerator {
       Set<String> filesToConvert, List<SourceFile> srcFiles, List<SourceFile> externs)
       throws AssertionError {
     GentsResult result = new GentsResult();
+    result.moduleRewriteLog =
+        generateTypeScript(
+            filesToConvert,
+            filesToConvert,
+            srcFiles,
+            externs,
+            (sourceFileName, tsCode) ->
+                result.sourceFileMap.put(
+                    pathUtil.getFilePathWithoutExtension(sourceFileName), tsCode));
+    return result;
+  }
+
+  /**
+   * Converts filesToConvert and passes the TypeScript code of each file in filesToEmit, a subset
+   * of filesToConvert, to the sink as soon as it is generated. All passes run on filesToConvert,
+   * so the code of a file does not depend on which other files are emitted. Returns the module
+   * rewrite log.
+   */
+  String generateTypeScript(
+      Set<String> filesToConvert,
+      Set<String> filesToEmit,
+      List<SourceFile> srcFiles,
+      List<SourceFile> externs,
+      ResultSink sink) {
+    CollectModuleMetadata modulePrePass =
+        new CollectModuleMetadata(compiler, nameUtil, filesToConvert, profiler);
+    if (opts.parseOnlyDependencies) {
+      List<SourceFile> dependencies = new ArrayList<>();
+      List<SourceFile> converted = new ArrayList<>();
+      for (SourceFile file : srcFiles) {
+        if (filesToConvert.contains(file.getName())) {
+          converted.add(file);
+        } else {
+          dependencies.add(file);
+        }
+      }
+      collectDependencyMetadata(dependencies, modulePrePass);
+      srcFiles = converted;
+    }
 
     final CompilerOptions compilerOpts = opts.getCompilerOptions();
     // Compile javascript code
-    compiler.compile(externs, srcFiles, compilerOpts);
+    try (PhaseProfiler.Phase p = profiler.start("compile")) {
+      compiler.compile(externs, srcFiles, compilerOpts);
+    }
 
     Node externRoot = compiler.getRoot().getFirstChild();
     Node srcRoot = compiler.getRoot().getLastChild();
 
-    new RemoveGoogScopePass(compiler).process(externRoot, srcRoot);
-
-    CollectModuleMetadata modulePrePass =
-        new CollectModuleMetadata(compiler, nameUtil, filesToConvert);
-    modulePrePass.process(externRoot, srcRoot);
+    process(
+        "RemoveGoogScopePass", new RemoveGoogScopePass(compiler, profiler), externRoot, srcRoot);
+    process("CollectModuleMetadata", modulePrePass, externRoot, srcRoot);
 
     // Strips all file nodes that we are not compiling.
     stripNonCompiledNodes(srcRoot, filesToConvert);
 
-    CommentLinkingPass commentsPass = new CommentLinkingPass(compiler);
-    commentsPass.process(externRoot, srcRoot);
+    CommentLinkingPass commentsPass = new CommentLinkingPass(compiler, profiler);
+    process("CommentLinkingPass", commentsPass, externRoot, srcRoot);
     final NodeComments comments = commentsPass.getComments();
 
     ModuleConversionPass modulePass =
@@ -187,27 +367,38 @@ public class TypeScriptGenerator {
             modulePrePass.getFileMap(),
             modulePrePass.getNamespaceMap(),
             comments,
-            opts.alreadyConvertedPrefix);
-    modulePass.process(externRoot, srcRoot);
-
-    new TypeConversionPass(compiler, modulePrePass, comments).process(externRoot, srcRoot);
-
-    new TypeAnnotationPass(
+            opts.alreadyConvertedPrefix,
+            profiler);
+    process("ModuleConversionPass", modulePass, externRoot, srcRoot);
+
+    process(
+        "TypeConversionPass",
+        new TypeConversionPass(compiler, modulePrePass, comments, profiler),
+        externRoot,
+        srcRoot);
+
+    process(
+        "TypeAnnotationPass",
+        new TypeAnnotationPass(
             compiler,
             pathUtil,
             nameUtil,
             modulePrePass.getSymbolMap(),
             modulePass.getTypeRewrite(),
             comments,
-            opts.externsMap)
-        .process(externRoot, srcRoot);
+            opts.externsMap,
+            profiler),
+        externRoot,
+        srcRoot);
 
-    new StyleFixPass(compiler, comments).process(externRoot, srcRoot);
+    process("StyleFixPass", new StyleFixPass(compiler, comments, profiler), externRoot, srcRoot);
 
     // We only use the source root as the extern root is ignored for codegen
     for (Node file : srcRoot.children()) {
+      if (!filesToEmit.contains(file.getSourceFileName())) {
+        continue;
+      }
       try {
-        String filepath = pathUtil.getFilePathWithoutExtension(file.getSourceFileName());
         CodeGeneratorFactory factory =
             new CodeGeneratorFactory() {
               @Override
@@ -216,15 +407,18 @@ public class TypeScriptGenerator {
               }
             };
 
-        String tsCode =
-            new CodePrinter.Builder(file)
-                .setCompilerOptions(opts.getCompilerOptions())
-                .setTypeRegistry(compiler.getTypeRegistry())
-                .setCodeGeneratorFactory(factory)
-                .setPrettyPrint(true)
-                .setLineBreak(true)
-                .setOutputTypes(true)
-                .build();
+        String tsCode;
+        try (PhaseProfiler.Phase p = profiler.start("CodePrinter", file.getSourceFileName())) {
+          tsCode =
+              new CodePrinter.Builder(file)
+                  .setCompilerOptions(opts.getCompilerOptions())
+                  .setTypeRegistry(compiler.getTypeRegistry())
+                  .setCodeGeneratorFactory(factory)
+                  .setPrettyPrint(true)
+                  .setLineBreak(true)
+                  .setOutputTypes(true)
+                  .build();
+        }
 
         // For whatever reason closure sometimes prefixes the emit with an empty new line. Strip
         // newlines not present in the original source.
@@ -238,20 +432,68 @@ public class TypeScriptGenerator {
           tsCode = tsCode.substring(newCount - originalCount);
         }
 
-        result.sourceFileMap.put(filepath, tryClangFormat(tsCode));
+        try (PhaseProfiler.Phase p = profiler.start("clang-format", file.getSourceFileName())) {
+          tsCode = tryClangFormat(tsCode);
+        }
+        sink.accept(file.getSourceFileName(), tsCode);
       } catch (Throwable t) {
-        System.err.println("Failed while converting " + file.getSourceFileName());
-        t.printStackTrace(System.err);
+        errStream.println("Failed while converting " + file.getSourceFileName());
+        t.printStackTrace(errStream);
         compiler.report(
             JSError.make(file.getSourceFileName(), -1, -1, GENTS_INTERNAL_ERROR, t.getMessage()));
       }
     }
 
-    result.moduleRewriteLog =
+    String moduleRewriteLog =
         new ModuleRenameLogger()
             .generateModuleRewriteLog(filesToConvert, modulePrePass.getNamespaceMap());
+    if (dependencyErrorManager != null) {
+      dependencyErrorManager.doGenerateReport();
+    }
     errorManager.doGenerateReport();
-    return result;
+    return moduleRewriteLog;
+  }
+
+  /**
+   * Parses dependencies with a separate compiler, without running the compiler passes on them, and
+   * collects their module metadata. Of dependencies, gents only needs the provided namespaces and
+   * exports, which are part of the AST directly after parsing.
+   */
+  private void collectDependencyMetadata(
+      List<SourceFile> dependencies, CollectModuleMetadata modulePrePass) {
+    Compiler parsingCompiler = new Compiler();
+    parsingCompiler.disableThreads();
+    // The errors of dependencies are reported separately, with source excerpts from the compiler
+    // that parsed them.
+    dependencyErrorManager =
+        new GentsErrorManager(
+            errStream, ErrorFormat.MULTILINE.toFormatter(parsingCompiler, true), opts.debug);
+    parsingCompiler.setErrorManager(dependencyErrorManager);
+    try (PhaseProfiler.Phase p = profiler.start("parseDependencies")) {
+      parsingCompiler.init(
+          new ArrayList<SourceFile>(), dependencies, opts.getDependencyCompilerOptions());
+      parsingCompiler.parseForCompilation();
+    }
+    Node externRoot = parsingCompiler.getRoot().getFirstChild();
+    Node dependencyRoot = parsingCompiler.getRoot().getLastChild();
+    process(
+        "RemoveGoogScopePass",
+        new RemoveGoogScopePass(parsingCompiler, profiler),
+        externRoot,
+        dependencyRoot);
+    try (PhaseProfiler.Phase p = profiler.start("CollectModuleMetadata")) {
+      modulePrePass.processParsedFiles(parsingCompiler, dependencyRoot);
+    }
+  }
+
+  /**
+   * Runs a pass as a phase. The passes report their own per-file phases under the same name, see
+   * {@link ScriptPhases}.
+   */
+  private void process(String passName, CompilerPass pass, Node externRoot, Node srcRoot) {
+    try (PhaseProfiler.Phase p = profiler.start(passName)) {
+      pass.process(externRoot, srcRoot);
+    }
   }
 
   private Integer countBeginningNewlines(CharSequence originalSourceCode) {
@@ -329,14 +571,24 @@ public class TypeScriptGenerator {
   }
 
   /** Returns a list of source files from a list of file names. */
-  private static List<SourceFile> getFiles(Collection<String> fileNames) {
+  private List<SourceFile> getFiles(Collection<String> fileNames) {
     List<SourceFile> files = new ArrayList<>(fileNames.size());
     for (String fileName : fileNames) {
-      files.add(SourceFile.fromFile(fileName, UTF_8));
+      String contents = sourceContents.get(fileName);
+      files.add(
+          contents != null
+              ? SourceFile.fromCode(fileName, contents)
+              : SourceFile.fromFile(fileName, UTF_8));
     }
     return files;
   }
 
+  /** Receives the TypeScript code of each converted file as soon as it is generated. */
+  interface ResultSink {
+    void accept(String sourceFileName, String tsCode);
+  }
+
+  /** Keeps all generated code in memory, mostly for tests. */
   static class GentsResult {
 
     public Map<String, String> sourceFileMap = new LinkedHashMap<>();
@@ -1,7 +1,9 @@
 package com.google.javascript.clutz;
 
+import static com.google.common.truth.Truth.assertThat;
 import static com.google.javascript.clutz.ProgramSubject.assertThatProgram;
 
+import com.google.common.truth.StringSubject;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -33,10 +35,41 @@ public class ClutzErrorManagerTest {
         .contains("foo.x = function");
   }
 
+  @Test
+  public void testReportsLineAndColumn() {
+    // Clutz does not preserve detailed source info, which must not affect diagnostic positions.
+    assertThatProgram("/** @type {number} */ var x = 1;", "/** @type {number} */ var x = 2;")
+        .diagnosticStream()
+        .containsMatch("main\\.js:2:26: ERROR.*Variable x declared more than once");
+  }
+
   @Test
   public void testReportsWarningsInTests() {
     assertThatProgram("/** @see */", "var noSee;")
         .diagnosticStream()
         .containsMatch("WARNING.*@see tag missing description");
   }
+
+  @Test
+  public void testFailFastStopsAtFirstError() {
+    ProgramSubject subject =
+        assertThatProgram(
+            "/** @type {number} */ var x = 1;",
+            "/** @type {number} */ var x = 2;",
+            "/** @type {number} */ var y = 1;",
+            "/** @type {number} */ var y = 2;");
+    subject.failFast = true;
+    StringSubject diagnostics = subject.diagnosticStream();
+    diagnostics.containsMatch("ERROR.*Variable x declared more than once");
+    diagnostics.doesNotContainMatch("Variable y declared more than once");
+  }
+
+  @Test
+  public void testFailFastFoundInWrappedExceptions() {
+    // NodeTraversal rethrows exceptions from its callbacks as internal compiler errors.
+    RuntimeException internalError =
+        new RuntimeException("INTERNAL COMPILER ERROR", new ClutzErrorManager.FailFastException());
+    assertThat(ClutzErrorManager.isFailFast(internalError)).isTrue();
+    assertThat(ClutzErrorManager.isFailFast(new RuntimeException("other"))).isFalse();
+  }
 }
@@ -61,6 +61,9 @@ public class DeclarationGeneratorTest {
     if (input.getName().contains("_output_base")) {
       subject.emitBase = true;
     }
+    if (input.getName().contains("_reachable_externs")) {
+      subject.emitReachableExternsOnly = true;
+    }
     if (Arrays.asList("partial", "multifilePartial", "partialCrossModuleTypeImports")
         .contains(input.getParentFile().getName())) {
       subject.partialInput = true;
@@ -141,7 +144,7 @@ public class DeclarationGeneratorTest {
     return getTestDataFolderPath().resolve(fileName);
   }
 
-  private static Path getTestDataFolderPath() {
+  static Path getTestDataFolderPath() {
     Path root = FileSystems.getDefault().getPath(ProgramSubject.SOURCE_ROOT);
     Path testDir = root.resolve("src").resolve("test").resolve("java");
     String packageName = DeclarationGeneratorTest.class.getPackage().getName();
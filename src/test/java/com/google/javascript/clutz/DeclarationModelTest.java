@@ -0,0 +1,125 @@
+package com.google.javascript.clutz;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.javascript.clutz.DeclarationModel.Block;
+import com.google.javascript.clutz.DeclarationModel.Kind;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class DeclarationModelTest {
+
+  private static void line(DeclarationModel model, int depth, String text) {
+    model.startLine(depth);
+    model.append(text);
+    model.endLine();
+  }
+
+  private static DeclarationModel createModel() {
+    DeclarationModel model = new DeclarationModel();
+    line(model, 0, "//!! generated by clutz.");
+    model.beginBlock(Kind.NAMESPACE, null, "a/b.js");
+    line(model, 0, "// Generated from a/b.js");
+    model.beginNamespace("ಠ_ಠ.clutz.a.b");
+    model.setSymbol("a.b");
+    line(model, 0, "declare namespace ಠ_ಠ.clutz.a.b {");
+    line(model, 1, "let x : number ;");
+    line(model, 0, "}");
+    model.beginBlock(Kind.MODULE, "a.b", model.getSourceFile());
+    line(model, 0, "declare module 'goog:a.b' {");
+    line(model, 1, "import b = ಠ_ಠ.clutz.a.b;");
+    line(model, 1, "export = b;");
+    line(model, 0, "}");
+    model.endLine();
+    model.startLine(0);
+    model.append("// unterminated");
+    return model;
+  }
+
+  private static final String RENDERED =
+      "//!! generated by clutz.\n"
+          + "// Generated from a/b.js\n"
+          + "declare namespace ಠ_ಠ.clutz.a.b {\n"
+          + "  let x : number ;\n"
+          + "}\n"
+          + "declare module 'goog:a.b' {\n"
+          + "  import b = ಠ_ಠ.clutz.a.b;\n"
+          + "  export = b;\n"
+          + "}\n"
+          + "\n"
+          + "// unterminated";
+
+  @Test
+  public void testRender() {
+    DeclarationModel model = createModel();
+    assertThat(DeclarationRenderer.render(model)).isEqualTo(RENDERED);
+
+    Block namespace = model.getBlocks().get(1);
+    assertThat(namespace.kind).isEqualTo(Kind.NAMESPACE);
+    assertThat(namespace.name).isEqualTo("ಠ_ಠ.clutz.a.b");
+    assertThat(namespace.sourceFile).isEqualTo("a/b.js");
+    assertThat(namespace.symbol).isEqualTo("a.b");
+    assertThat(model.getBlocks().get(2).name).isEqualTo("a.b");
+  }
+
+  @Test
+  public void testRenderCompact() {
+    assertThat(DeclarationRenderer.render(createModel(), null, true))
+        .isEqualTo(
+            "//!! generated by clutz.\n"
+                + "declare namespace ಠ_ಠ.clutz.a.b{let x:number;}\n"
+                + "declare module 'goog:a.b'{import b=ಠ_ಠ.clutz.a.b;export=b;}\n");
+
+    DeclarationModel model = new DeclarationModel();
+    line(model, 0, "/**");
+    line(model, 0, " * A 'quoted' // comment.");
+    line(model, 0, " */");
+    line(model, 0, "function f (a : string , b ?: 'x  y') : void ;");
+    line(model, 0, "interface I { /* inline */");
+    line(model, 1, "a : number");
+    line(model, 1, "b : string");
+    line(model, 0, "}");
+    assertThat(DeclarationRenderer.render(model, null, true))
+        .isEqualTo("function f(a:string,b?:'x  y'):void;interface I{a:number\nb:string}\n");
+  }
+
+  @Test
+  public void testIndex() {
+    DeclarationIndex index = new DeclarationIndex();
+    String rendered = DeclarationRenderer.render(createModel(), index, false);
+
+    assertThat(index.getEntries()).hasSize(2);
+    DeclarationIndex.Entry namespace = index.getEntries().get(0);
+    assertThat(namespace.kind).isEqualTo(Kind.NAMESPACE);
+    assertThat(namespace.name).isEqualTo("ಠ_ಠ.clutz.a.b");
+    assertThat(namespace.symbol).isEqualTo("a.b");
+    assertThat(namespace.sourceFile).isEqualTo("a/b.js");
+    assertThat(namespace.startLine).isEqualTo(2);
+    assertThat(namespace.endLine).isEqualTo(5);
+    assertThat(slice(rendered, namespace))
+        .isEqualTo(
+            "// Generated from a/b.js\n"
+                + "declare namespace ಠ_ಠ.clutz.a.b {\n"
+                + "  let x : number ;\n"
+                + "}\n");
+
+    DeclarationIndex.Entry module = index.getEntries().get(1);
+    assertThat(module.kind).isEqualTo(Kind.MODULE);
+    assertThat(module.name).isEqualTo("a.b");
+    assertThat(module.sourceFile).isEqualTo("a/b.js");
+    assertThat(module.startLine).isEqualTo(6);
+    assertThat(module.endLine).isEqualTo(11);
+    assertThat(slice(rendered, module)).startsWith("declare module 'goog:a.b' {\n");
+  }
+
+  /** Returns the bytes of the entry's range in the UTF-8 encoded text. */
+  private static String slice(String text, DeclarationIndex.Entry entry) {
+    byte[] bytes = text.getBytes(UTF_8);
+    return new String(
+        Arrays.copyOfRange(bytes, (int) entry.startByte, (int) entry.endByte), UTF_8);
+  }
+}
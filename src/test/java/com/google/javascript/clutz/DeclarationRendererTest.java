@@ -0,0 +1,129 @@
+package com.google.javascript.clutz;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.io.Files;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class DeclarationRendererTest {
+  private static final CharMatcher PUNCTUATION = CharMatcher.anyOf(":;,(){}[]<>=|&?");
+
+  private static void line(DeclarationModel model, int depth, String text) {
+    model.startLine(depth);
+    model.append(text);
+    model.endLine();
+  }
+
+  @Test
+  public void testCompactKeepsMultiLineLiterals() {
+    DeclarationModel model = new DeclarationModel();
+    line(model, 0, "declare namespace ಠ_ಠ.clutz.a {");
+    line(model, 1, "let s : `a  {");
+    line(model, 2, "// not a comment");
+    line(model, 1, "}  b` ;");
+    line(model, 1, "let t : 'c \\");
+    line(model, 1, "d' ;");
+    line(model, 0, "}");
+    assertThat(DeclarationRenderer.render(model, null, true))
+        .isEqualTo(
+            "declare namespace ಠ_ಠ.clutz.a{let s:`a  {\n"
+                + "    // not a comment\n"
+                + "  }  b`;let t:'c \\\n"
+                + "  d';}\n");
+  }
+
+  @Test
+  public void testCompactDropsCommentsWithBraces() {
+    DeclarationModel model = new DeclarationModel();
+    line(model, 0, "interface I {");
+    line(model, 1, "a : number // }");
+    line(model, 1, "/* } */ b : string");
+    line(model, 1, "/**");
+    line(model, 1, " * {@link x} }");
+    line(model, 1, " */");
+    line(model, 1, "c : boolean");
+    line(model, 0, "}");
+    assertThat(DeclarationRenderer.render(model, null, true))
+        .isEqualTo("interface I{a:number\nb:string\nc:boolean}\n");
+  }
+
+  @Test
+  public void testCompactGoldensHaveSameTokens() throws Exception {
+    for (File golden :
+        Files.fileTraverser()
+            .depthFirstPreOrder(DeclarationGeneratorTest.getTestDataFolderPath().toFile())) {
+      if (!golden.isFile() || !golden.getName().endsWith(".d.ts")) {
+        continue;
+      }
+      String readable = Files.asCharSource(golden, UTF_8).read();
+      DeclarationModel model = new DeclarationModel();
+      for (String text : Files.readLines(golden, UTF_8)) {
+        line(model, 0, text);
+      }
+      String compact = DeclarationRenderer.render(model, null, true);
+      assertWithMessage("Compacting %s", golden.getPath())
+          .that(tokenize(compact))
+          .containsExactlyElementsIn(tokenize(readable))
+          .inOrder();
+    }
+  }
+
+  /**
+   * Splits declarations into tokens: literals, punctuation and words. Whitespace and the comments
+   * that --compact drops are skipped.
+   */
+  private static List<String> tokenize(String text) {
+    List<String> tokens = new ArrayList<>();
+    int i = 0;
+    while (i < text.length()) {
+      char c = text.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (text.startsWith("/*", i)) {
+        int end = text.indexOf("*/", i + 2);
+        i = end == -1 ? text.length() : end + 2;
+      } else if (text.startsWith("//", i)) {
+        int end = text.indexOf('\n', i);
+        end = end == -1 ? text.length() : end;
+        String comment = CharMatcher.whitespace().trimTrailingFrom(text.substring(i, end));
+        if (comment.startsWith("///") || comment.equals("//!! generated by clutz.")) {
+          tokens.add(comment);
+        }
+        i = end;
+      } else if (c == '\'' || c == '"' || c == '`') {
+        int end = i + 1;
+        while (end < text.length() && text.charAt(end) != c) {
+          end += text.charAt(end) == '\\' ? 2 : 1;
+        }
+        end = Math.min(end + 1, text.length());
+        tokens.add(text.substring(i, end));
+        i = end;
+      } else if (PUNCTUATION.matches(c)) {
+        tokens.add(String.valueOf(c));
+        i++;
+      } else {
+        int end = i + 1;
+        while (end < text.length()
+            && !Character.isWhitespace(text.charAt(end))
+            && !PUNCTUATION.matches(text.charAt(end))
+            && "'\"`".indexOf(text.charAt(end)) == -1
+            && !text.startsWith("//", end)
+            && !text.startsWith("/*", end)) {
+          end++;
+        }
+        tokens.add(text.substring(i, end));
+        i = end;
+      }
+    }
+    return tokens;
+  }
+}
@@ -2,6 +2,7 @@ package com.google.javascript.clutz;
 
 import static com.google.javascript.clutz.DeclarationGeneratorTest.JS_NO_EXTERNS;
 import static com.google.javascript.clutz.DeclarationGeneratorTest.TS_SOURCES;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.fail;
 
 import com.google.common.base.Charsets;
@@ -9,6 +10,7 @@ import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.io.CharStreams;
+import com.google.common.io.Files;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.InputStreamReader;
@@ -17,7 +19,9 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
@@ -26,6 +30,8 @@ import org.junit.runners.JUnit4;
  */
 @RunWith(JUnit4.class)
 public class DeclarationSyntaxTest {
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
   private static final FilenameFilter JS_MULTIFILE_PARTIAL =
       (File dir, String name) ->
           JS_NO_EXTERNS.accept(dir, name) && dir.getName().equals("multifilePartial");
@@ -41,7 +47,7 @@ public class DeclarationSyntaxTest {
   public static final Path TSC =
       FileSystems.getDefault().getPath("node_modules", "typescript", "bin", "tsc");
 
-  private static final ImmutableList<String> TSC_FLAGS =
+  static final ImmutableList<String> TSC_FLAGS =
       ImmutableList.of(
           "--noEmit",
           "--skipDefaultLibCheck",
@@ -105,6 +111,28 @@ public class DeclarationSyntaxTest {
     runChecked(tscCommand);
   }
 
+  @Test
+  public void testCompactDeclarationSyntax() throws Exception {
+    List<File> inputs = DeclarationGeneratorTest.getTestInputFilesNoPartial(JS_NO_EXTERNS);
+    List<String> tscCommand = Lists.newArrayList(TSC.toString());
+    tscCommand.addAll(TSC_FLAGS);
+    tscCommand.add("src/resources/closure.lib.d.ts");
+    for (File input : inputs) {
+      File golden = DeclarationGeneratorTest.getGoldenFile(input, ".d.ts");
+      // Compacts the golden lines, as the readable output would be rendered with --compact.
+      DeclarationModel model = new DeclarationModel();
+      for (String line : Files.readLines(golden, UTF_8)) {
+        model.startLine(0);
+        model.append(line);
+        model.endLine();
+      }
+      File compact = new File(tmpFolder.getRoot(), golden.getName());
+      Files.asCharSink(compact, UTF_8).write(DeclarationRenderer.render(model, null, true));
+      tscCommand.add(compact.getPath());
+    }
+    runChecked(tscCommand);
+  }
+
   @Test
   public void testDeclarationUsage() throws Exception {
     doTestDeclarationUsage(TS_SOURCES);
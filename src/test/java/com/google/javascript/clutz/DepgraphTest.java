@@ -1,15 +1,29 @@
 package com.google.javascript.clutz;
 
 import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.javascript.jscomp.SourceFile;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 @RunWith(JUnit4.class)
 public class DepgraphTest {
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
   static final Path DEPGRAPH_PATH = DeclarationGeneratorTest.getTestInputFile("closure.depgraph");
 
   static Depgraph parseFile(String filename) {
@@ -38,4 +52,80 @@ public class DepgraphTest {
     Depgraph depgraph = parseFile("partialCrossModuleTypeImports/cross_module_type.depgraph");
     assertThat(depgraph.getGoogProvides()).containsExactly("googprovide.exporter");
   }
+
+  @Test
+  public void testRootProvides() throws Exception {
+    Depgraph depgraph = parseFile("partialCrossModuleTypeImports/cross_module_type.depgraph");
+    assertThat(depgraph.getRootProvides()).containsExactly("incr.clutz.lib");
+  }
+
+  private static final List<List<String>> ES6_MODULE =
+      ImmutableList.of(ImmutableList.of("lang", "es6"), ImmutableList.of("module", "es6"));
+
+  /** Returns the depgraph entry of a file, in the format written by Bazel. */
+  private static List<?> depgraphEntry(
+      String fileName, List<List<String>> loadFlags, String... provides) {
+    List<String> provideList = new ArrayList<>();
+    provideList.add("$$$" + fileName);
+    Collections.addAll(provideList, provides);
+    return ImmutableList.of(
+        fileName,
+        ImmutableList.of(
+            ImmutableList.of("provides", provideList), ImmutableList.of("load_flags", loadFlags)));
+  }
+
+  @Test
+  public void testPrunesToRootFiles() throws Exception {
+    Path prune = DeclarationGeneratorTest.getTestDataFolderPath().resolve("prune");
+    String root = prune.resolve("root_module.js").toString();
+    String dependency = prune.resolve("es6_dependency.js").toString();
+    String unrequired = prune.resolve("unrequired.js").toString();
+    File depgraph = tmpFolder.newFile("prune.depgraph");
+    Files.asCharSink(depgraph, UTF_8)
+        .write(
+            new Gson()
+                .toJson(
+                    ImmutableList.of(
+                        ImmutableList.of(
+                            "roots", ImmutableList.of(depgraphEntry(root, ES6_MODULE))),
+                        ImmutableList.of(
+                            "nonroots",
+                            ImmutableList.of(
+                                depgraphEntry(dependency, ES6_MODULE),
+                                depgraphEntry(
+                                    unrequired, ImmutableList.of(), "unrequired"))))));
+
+    Options opts =
+        new Options(
+            new String[] {
+              root,
+              dependency,
+              unrequired,
+              "--depgraphs",
+              depgraph.getPath(),
+              "--prune_to_depgraph_roots"
+            });
+    // The root module has no provides, so it is an entry point by its file name.
+    assertThat(opts.depgraph.getRootEs6Modules()).containsExactly(root);
+    assertThat(opts.entryPoints).isEmpty();
+    assertThat(opts.entryPointFiles).containsExactly(root);
+
+    List<SourceFile> sourceFiles = new ArrayList<>();
+    for (String fileName : opts.arguments) {
+      sourceFiles.add(SourceFile.fromFile(fileName, UTF_8));
+    }
+    List<SourceFile> externs =
+        ImmutableList.of(
+            SourceFile.fromFile(ProgramSubject.resource("src/resources/es6_min.js"), UTF_8));
+    PrintStream err = System.err;
+    ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+    try {
+      System.setErr(new PrintStream(diagnostics));
+      new DeclarationGenerator(opts).generateDeclarations(sourceFiles, externs, opts.depgraph);
+    } finally {
+      System.setErr(err);
+    }
+    // The root and the module it imports survive, the goog.provide nobody requires is dropped.
+    assertThat(diagnostics.toString()).contains("dropped 1 of 3 files");
+  }
 }
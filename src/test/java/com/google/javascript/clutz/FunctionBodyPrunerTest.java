@@ -0,0 +1,162 @@
+package com.google.javascript.clutz;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.javascript.clutz.ProgramSubject.assertThatProgram;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.SourceFile;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class FunctionBodyPrunerTest {
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  private static final String[] DECLARATIONS_IN_FUNCTION = {
+    "goog.provide('skip.ns');",
+    "skip.ns.init = function() {",
+    "  /** @constructor */",
+    "  skip.ns.Local = function() {",
+    "    /** @type {number} */",
+    "    this.x = 0;",
+    "  };",
+    "  /** @typedef {{name: string}} */",
+    "  skip.ns.Options;",
+    "};",
+    "/** @param {!skip.ns.Options} options */",
+    "skip.ns.use = function(options) {",
+    "  var name = options.name;",
+    "};"
+  };
+
+  private static final String[] GOOG_SCOPE = {
+    "goog.provide('skip.scoped.Bar');",
+    "goog.scope(function() {",
+    "  /** @constructor */",
+    "  var Bar = function() {};",
+    "  /** @return {number} */",
+    "  Bar.prototype.get = function() {",
+    "    return 1;",
+    "  };",
+    "  /** @const */",
+    "  skip.scoped.Bar = Bar;",
+    "});"
+  };
+
+  private static final String[] CONSTRUCTOR_FIELDS = {
+    "goog.provide('skip.Point');",
+    "/** @constructor */",
+    "skip.Point = function() {",
+    "  /** @type {number} */",
+    "  this.x = 0;",
+    "  this.y = 0;",
+    "};",
+    "/** @return {number} */",
+    "skip.Point.prototype.sum = function() {",
+    "  return this.x + this.y;",
+    "};",
+    "skip.Point.prototype.reset = function() {",
+    "  this.x = 0;",
+    "};",
+    "skip.Point.prototype.copy = function() {",
+    "  return new skip.Point();",
+    "};"
+  };
+
+  private static final String[] CLASS_FIELDS = {
+    "goog.provide('skip.Box');",
+    "skip.Box = class {",
+    "  constructor() {",
+    "    /** @type {number} */",
+    "    this.size = 0;",
+    "  }",
+    "  /** @return {number} */",
+    "  getSize() {",
+    "    return this.size;",
+    "  }",
+    "};"
+  };
+
+  @Test
+  public void testKeepsDeclarationsInFunctions() {
+    // Only the body of skip.ns.use is pruned, the one of skip.ns.init declares types.
+    assertThat(prune(DECLARATIONS_IN_FUNCTION)).isEqualTo(1);
+    assertThatProgram(DECLARATIONS_IN_FUNCTION)
+        .generatesSameDeclarationsWithSkippedFunctionBodies();
+  }
+
+  @Test
+  public void testKeepsGoogScope() {
+    assertThat(prune(GOOG_SCOPE)).isEqualTo(1);
+    assertThatProgram(GOOG_SCOPE).generatesSameDeclarationsWithSkippedFunctionBodies();
+  }
+
+  @Test
+  public void testKeepsConstructorFields() {
+    // reset assigns a property and copy has an inferred return type, only sum is pruned.
+    assertThat(prune(CONSTRUCTOR_FIELDS)).isEqualTo(1);
+    assertThatProgram(CONSTRUCTOR_FIELDS).generatesSameDeclarationsWithSkippedFunctionBodies();
+  }
+
+  @Test
+  public void testKeepsClassConstructorFields() {
+    assertThat(prune(CLASS_FIELDS)).isEqualTo(1);
+    assertThatProgram(CLASS_FIELDS).generatesSameDeclarationsWithSkippedFunctionBodies();
+  }
+
+  @Test
+  public void testVerifierReportsDiagnosticsOnce() throws Exception {
+    File input = tmpFolder.newFile("input.js");
+    Files.asCharSink(input, UTF_8)
+        .write(
+            Joiner.on('\n')
+                .join(
+                    "goog.provide('skip.x');",
+                    "/** @param {some.Unknown} y */",
+                    "skip.x = function(y) {};"));
+    String diagnostics = generate(input);
+    assertThat(diagnostics).contains("some.Unknown");
+    assertThat(generate(input, "--verify_skip_function_bodies")).isEqualTo(diagnostics);
+  }
+
+  private static int prune(String... lines) {
+    Compiler compiler = new Compiler();
+    return new FunctionBodyPruner()
+        .prune(compiler.parse(SourceFile.fromCode("main.js", Joiner.on('\n').join(lines))));
+  }
+
+  private String generate(File input, String... flags) throws Exception {
+    List<String> args =
+        Lists.newArrayList(
+            ProgramSubject.resource("src/test/java/com/google/javascript/clutz/testdata/base.js"),
+            input.getPath(),
+            "--externs",
+            ProgramSubject.resource("src/resources/es6_min.js"),
+            "--skip_function_bodies",
+            "-o",
+            tmpFolder.getRoot().toPath().resolve("out.d.ts").toString());
+    args.addAll(Arrays.asList(flags));
+    Options opts = new Options(args.toArray(new String[0]));
+    PrintStream err = System.err;
+    ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+    try {
+      System.setErr(new PrintStream(diagnostics));
+      new DeclarationGenerator(opts).generateDeclarations();
+    } finally {
+      System.setErr(err);
+    }
+    return diagnostics.toString();
+  }
+}
@@ -0,0 +1,35 @@
+package com.google.javascript.clutz;
+
+import static com.google.javascript.clutz.ProgramSubject.assertThatProgram;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ImplementedInterfacesTest {
+
+  @Test
+  public void testCyclicExtends() {
+    // X is emitted first and walks A -> B -> A. B must still reach IArrayLike through A when Y,
+    // which only implements B, looks up its interfaces.
+    ProgramSubject subject =
+        assertThatProgram(
+            "goog.provide('cyc');",
+            "/** @interface @extends {cyc.A} */",
+            "cyc.B = function() {};",
+            "/** @interface @extends {cyc.B} @extends {IArrayLike<string>} */",
+            "cyc.A = function() {};",
+            "/** @constructor @implements {cyc.A} */",
+            "cyc.X = function() {};",
+            "/** @type {number} */",
+            "cyc.X.prototype.length;",
+            "/** @constructor @implements {cyc.B} */",
+            "cyc.Y = function() {};",
+            "/** @type {number} */",
+            "cyc.Y.prototype.length;");
+    subject.withPlatform = true;
+    subject.debug = false;
+    subject.generatedDeclarations().containsMatch("class Y [^}]*\\[ key: number \\]: string ;");
+  }
+}
@@ -0,0 +1,122 @@
+package com.google.javascript.clutz;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.javascript.clutz.ProgramSubject.assertThatProgram;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.util.Collections;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class InputFactsCacheTest {
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  private static InputFacts createFacts() {
+    return new InputFacts(
+        true,
+        ImmutableList.of(
+            new InputFacts.Scope(
+                "bare.reexport",
+                ImmutableList.of(
+                    new InputFacts.Statement(
+                        InputFacts.StatementKind.DESTRUCTURING_IMPORT,
+                        "original.module",
+                        null,
+                        null,
+                        ImmutableMap.of("Class", "Class", "Other", "Renamed")),
+                    new InputFacts.Statement(
+                        InputFacts.StatementKind.NAMED_PROP_EXPORT,
+                        "Renamed",
+                        "foo",
+                        "bar",
+                        Collections.emptyMap()))),
+            new InputFacts.Scope(null, ImmutableList.of())));
+  }
+
+  @Test
+  public void testStoresFacts() {
+    InputFactsCache cache = new InputFactsCache(tmpFolder.getRoot().getPath(), 1024 * 1024);
+    String key = InputFactsCache.computeKey("goog.module('bare.reexport');");
+    assertThat(cache.get(key)).isNull();
+
+    cache.put(key, createFacts());
+    assertThat(cache.get(key)).isEqualTo(createFacts());
+    assertThat(cache.get(InputFactsCache.computeKey("goog.module('other');"))).isNull();
+  }
+
+  @Test
+  public void testIgnoresCorruptEntries() throws Exception {
+    InputFactsCache cache = new InputFactsCache(tmpFolder.getRoot().getPath(), 1024 * 1024);
+    String key = InputFactsCache.computeKey("var x;");
+    cache.put(key, createFacts());
+    Files.asCharSink(getEntry(key), UTF_8).write("garbage");
+    assertThat(cache.get(key)).isNull();
+  }
+
+  private File getEntry(String key) {
+    return new File(tmpFolder.getRoot(), key.substring(0, 2) + "/" + key.substring(2) + ".facts");
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    String a = InputFactsCache.computeKey("var a;");
+    String b = InputFactsCache.computeKey("var b;");
+    String c = InputFactsCache.computeKey("var c;");
+    InputFactsCache cache = new InputFactsCache(tmpFolder.getRoot().getPath(), 0);
+    cache.put(a, createFacts());
+    long entrySize = getEntry(a).length();
+    // Room for two entries.
+    cache = new InputFactsCache(tmpFolder.getRoot().getPath(), 2 * entrySize + entrySize / 2);
+    cache.put(b, createFacts());
+    getEntry(a).setLastModified(1000);
+    getEntry(b).setLastModified(2000);
+    // Reading a refreshes it, so b is the least recently used.
+    assertThat(cache.get(a)).isNotNull();
+
+    cache.put(c, createFacts());
+    cache.evict();
+    assertThat(cache.get(a)).isNotNull();
+    assertThat(cache.get(b)).isNull();
+    assertThat(cache.get(c)).isNotNull();
+  }
+
+  @Test
+  public void testEntriesAreNotPrivate() throws Exception {
+    Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+    InputFactsCache cache = new InputFactsCache(tmpFolder.getRoot().getPath(), 1024 * 1024);
+    String key = InputFactsCache.computeKey("var x;");
+    cache.put(key, createFacts());
+    File plain = tmpFolder.newFile("plain");
+    // Entries get the permissions of any new file, so that a shared cache can be read by others.
+    assertThat(java.nio.file.Files.getPosixFilePermissions(getEntry(key).toPath()))
+        .isEqualTo(java.nio.file.Files.getPosixFilePermissions(plain.toPath()));
+  }
+
+  @Test
+  public void testWarmCacheKeepsOutput() throws Exception {
+    Path partial = DeclarationGeneratorTest.getTestDataFolderPath().resolve("partial");
+    File input = partial.resolve("bare_reexport.js").toFile();
+    File golden = partial.resolve("bare_reexport.d.ts").toFile();
+    String cacheDir = tmpFolder.newFolder("facts").getPath();
+    // The first run extracts and caches the facts, the second one only reads them.
+    for (int run = 0; run < 2; run++) {
+      ProgramSubject subject = assertThatProgram(input);
+      subject.partialInput = true;
+      subject.debug = false;
+      subject.factsCacheDir = cacheDir;
+      subject.generatesDeclarations(golden);
+    }
+    assertThat(new File(cacheDir).list()).isNotEmpty();
+  }
+}
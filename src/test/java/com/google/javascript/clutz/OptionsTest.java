@@ -1,18 +1,24 @@
 package com.google.javascript.clutz;
 
 import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.*;
 
+import com.google.common.io.Files;
 import com.google.javascript.jscomp.CompilerOptions;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.PrintStream;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.kohsuke.args4j.CmdLineException;
 
 @RunWith(JUnit4.class)
 public class OptionsTest {
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
 
   @Test
   public void testFullUsage() throws Exception {
@@ -180,6 +186,122 @@ public class OptionsTest {
     assertThat(opts.externs).isEmpty();
   }
 
+  @Test
+  public void testEmitReachableExternsOnly() throws Exception {
+    Options opts = new Options(new String[] {"foo.js", "--emit_reachable_externs_only"});
+    assertThat(opts.emitReachableExternsOnly).isTrue();
+    assertThat(new Options(new String[] {"foo.js"}).emitReachableExternsOnly).isFalse();
+  }
+
+  @Test
+  public void testPruneToDepgraphRoots() throws Exception {
+    String depgraph =
+        DeclarationGeneratorTest.getTestInputFile(
+                "partialCrossModuleTypeImports/cross_module_type.depgraph")
+            .toString();
+    Options opts =
+        new Options(
+            new String[] {"foo.js", "--depgraphs", depgraph, "--prune_to_depgraph_roots"});
+    assertThat(opts.entryPoints).containsExactly("incr.clutz.lib");
+
+    opts =
+        new Options(
+            new String[] {
+              "foo.js",
+              "--depgraphs",
+              depgraph,
+              "--prune_to_depgraph_roots",
+              "--closure_entry_points",
+              "ns.entryPoint"
+            });
+    assertThat(opts.entryPoints).containsExactly("ns.entryPoint");
+  }
+
+  @Test
+  public void testShardOutputByRoot() throws Exception {
+    Options opts = new Options(new String[] {"foo.js", "--shard_output_by_root", "-o", "out"});
+    assertThat(opts.shardOutputByRoot).isTrue();
+    assertThat(DeclarationGenerator.getShardPath("my/thing/foo.js")).isEqualTo("my/thing/foo.d.ts");
+    assertThat(DeclarationGenerator.getShardPath("/my/thing/foo.js"))
+        .isEqualTo("my/thing/foo.d.ts");
+    assertThat(DeclarationGenerator.getShardPath("my/../thing/./foo.js"))
+        .isEqualTo("thing/foo.d.ts");
+  }
+
+  @Test
+  public void testShardPathStaysInOutputDirectory() throws Exception {
+    for (String rootFile : new String[] {"../foo.js", "my/../../foo.js", ".js"}) {
+      try {
+        DeclarationGenerator.getShardPath(rootFile);
+        fail("Should throw for " + rootFile);
+      } catch (IllegalArgumentException expected) {
+        assertThat(expected.getMessage()).contains(rootFile);
+      }
+    }
+  }
+
+  @Test
+  public void testShardOutputByRootRequiresDirectory() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    PrintStream stdErr = System.err;
+    System.setErr(new PrintStream(out));
+    try {
+      new Options(new String[] {"foo.js", "--shard_output_by_root"});
+      fail("Should throw");
+    } catch (CmdLineException expected) {
+      assertThat(expected.getMessage())
+          .isEqualTo("--shard_output_by_root requires -o to name a directory");
+    } finally {
+      System.setErr(stdErr);
+    }
+  }
+
+  @Test
+  public void testSkipFunctionBodies() throws Exception {
+    Options opts =
+        new Options(
+            new String[] {"foo.js", "--skip_function_bodies", "--verify_skip_function_bodies"});
+    assertThat(opts.skipFunctionBodies).isTrue();
+    assertThat(opts.verifySkipFunctionBodies).isTrue();
+    assertThat(new Options(new String[] {"foo.js"}).skipFunctionBodies).isFalse();
+  }
+
+  @Test
+  public void testBoundedMemoryStreamsOutput() throws Exception {
+    assertThat(new Options(new String[] {"foo.js", "--bounded_memory"}).streamOutput()).isTrue();
+    assertThat(new Options(new String[] {"foo.js"}).streamOutput()).isFalse();
+    // The cache stores the whole output, so it is not streamed.
+    Options cached =
+        new Options(new String[] {"foo.js", "--bounded_memory", "--cache_dir", "cache"});
+    assertThat(cached.boundedMemory).isTrue();
+    assertThat(cached.streamOutput()).isFalse();
+  }
+
+  @Test
+  public void testBatchManifest() throws Exception {
+    File manifest = tmpFolder.newFile("batch.json");
+    String depgraph = DepgraphTest.DEPGRAPH_PATH.toFile().toString().replace("\\", "\\\\");
+    Files.asCharSink(manifest, UTF_8)
+        .write(
+            "[{\"target\": \"//my:thing\", \"depgraphs\": [\""
+                + depgraph
+                + "\"], \"output\": \"thing.d.ts\"}]");
+    Options opts = new Options(new String[] {"--batch_manifest", manifest.toString()});
+    assertThat(opts.batchManifest).isEqualTo(manifest.toString());
+    // Sources default to all files of the manifest depgraphs.
+    assertThat(opts.arguments)
+        .containsExactly(
+            "my/thing/static/js/annotations/annotations-canvas-controller.js",
+            "blaze-out/blah/my/blaze-out-file.js",
+            "javascript/closure/base.js",
+            "javascript/closure/string/string.js");
+    BatchManifest.Target target = BatchManifest.parseFrom(manifest.toString()).getTargets().get(0);
+    assertThat(target.output).isEqualTo("thing.d.ts");
+    assertThat(target.getDepgraph(true).isRoot("blaze-out/blah/my/blaze-out-file.js")).isTrue();
+    assertThat(target.getDepgraph(true).isRoot("javascript/closure/base.js")).isFalse();
+    assertThat(target.getDepgraph(false).isRoot("javascript/closure/base.js")).isTrue();
+  }
+
   @Test
   public void testStopOption() throws Exception {
     Options opts =
@@ -61,8 +61,13 @@ class ProgramSubject extends Subject {
   public boolean partialInput = false;
   public String extraExternFile = null;
   public boolean emitBase = false;
+  public boolean emitReachableExternsOnly = false;
   public String depgraph = null;
   public boolean debug = true;
+  public boolean failFast = false;
+  public boolean boundedMemory = false;
+  public String factsCacheDir = null;
+  public boolean skipFunctionBodies = false;
 
   static ProgramSubject assertThatProgram(String... sourceLines) {
     String sourceText = Joiner.on('\n').join(sourceLines);
@@ -106,6 +111,7 @@ class ProgramSubject extends Subject {
       // which have 2 golden files that are concatenated, or if the golden has comments, both of which
       // shouldn't be blindly overwritten
       if (System.getenv("UPDATE_GOLDENS") != null
+          && !skipFunctionBodies
           && !golden.getName().endsWith("_with_platform.d.ts")
           && expected.equals(expectedClean)) {
         Files.asCharSink(golden, Charsets.UTF_8).write(stripped);
@@ -118,6 +124,21 @@ class ProgramSubject extends Subject {
     }
   }
 
+  /** Checks that pruning function bodies before type checking does not change the output. */
+  void generatesSameDeclarationsWithSkippedFunctionBodies() {
+    skipFunctionBodies = false;
+    String[] full = parse();
+    skipFunctionBodies = true;
+    String[] pruned = parse();
+    assertThat(pruned[1]).isEqualTo(full[1]);
+    check("generatedDeclarations()").that(pruned[0]).isEqualTo(full[0]);
+  }
+
+  StringSubject generatedDeclarations() {
+    String[] parseResult = parse();
+    return assertThat(parseResult[0]);
+  }
+
   StringSubject diagnosticStream() {
     String[] parseResult = parse();
     return assertThat(parseResult[1]);
@@ -126,6 +147,11 @@ class ProgramSubject extends Subject {
   private String[] parse() throws AssertionError {
     Options opts = new Options();
     opts.debug = debug;
+    opts.failFast = failFast;
+    opts.emitReachableExternsOnly = emitReachableExternsOnly;
+    opts.boundedMemory = boundedMemory;
+    opts.factsCacheDir = factsCacheDir;
+    opts.skipFunctionBodies = skipFunctionBodies;
     opts.skipEmitPattern = Pattern.compile(".*\\.skip\\.tsickle\\.js$");
     if (partialInput) {
       opts.partialInput = true;
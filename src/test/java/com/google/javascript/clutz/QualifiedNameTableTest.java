@@ -0,0 +1,53 @@
+package com.google.javascript.clutz;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class QualifiedNameTableTest {
+
+  @Test
+  public void testInternAddsNamespaces() {
+    QualifiedNameTable names = new QualifiedNameTable();
+    int id = names.intern("a.b.c");
+    assertThat(names.getName(id)).isEqualTo("a.b.c");
+    assertThat(names.getSimpleName(id)).isEqualTo("c");
+    int parent = names.getParent(id);
+    assertThat(names.getName(parent)).isEqualTo("a.b");
+    assertThat(names.getName(names.getParent(parent))).isEqualTo("a");
+    assertThat(names.getParent(names.getParent(parent))).isEqualTo(QualifiedNameTable.ROOT);
+    assertThat(names.intern("a.b")).isEqualTo(parent);
+  }
+
+  @Test
+  public void testLookupDoesNotIntern() {
+    QualifiedNameTable names = new QualifiedNameTable();
+    int size = names.size();
+    assertThat(names.lookup("x.y")).isEqualTo(QualifiedNameTable.NOT_FOUND);
+    assertThat(names.size()).isEqualTo(size);
+  }
+
+  @Test
+  public void testUndottedNamesAreInRoot() {
+    QualifiedNameTable names = new QualifiedNameTable();
+    int id = names.intern("a");
+    assertThat(names.getSimpleName(id)).isEqualTo("a");
+    assertThat(names.getParent(id)).isEqualTo(QualifiedNameTable.ROOT);
+  }
+
+  @Test
+  public void testGrowsPastInitialCapacity() {
+    QualifiedNameTable names = new QualifiedNameTable();
+    for (int i = 0; i < 1000; i++) {
+      names.intern("ns" + (i % 10) + ".name" + i);
+    }
+    for (int i = 0; i < 1000; i++) {
+      int id = names.lookup("ns" + (i % 10) + ".name" + i);
+      assertThat(names.getSimpleName(id)).isEqualTo("name" + i);
+      assertThat(names.getName(names.getParent(id))).isEqualTo("ns" + (i % 10));
+    }
+  }
+}
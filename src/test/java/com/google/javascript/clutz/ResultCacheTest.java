@@ -0,0 +1,79 @@
+package com.google.javascript.clutz;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.javascript.jscomp.SourceFile;
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ResultCacheTest {
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testStoresOutputAndDiagnostics() {
+    ResultCache cache = new ResultCache(tmpFolder.getRoot().getPath(), 1024 * 1024);
+    assertThat(cache.get("key")).isNull();
+
+    cache.put("key", new ResultCache.Entry("declare var x: number;\n", null, "ERROR - x\n", true));
+    ResultCache.Entry entry = cache.get("key");
+    assertThat(entry.dts).isEqualTo("declare var x: number;\n");
+    assertThat(entry.diagnostics).isEqualTo("ERROR - x\n");
+    assertThat(entry.hasErrors).isTrue();
+    assertThat(cache.get("other")).isNull();
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() throws Exception {
+    String dts = new String(new char[100]).replace('\0', 'x');
+    // Room for two entries.
+    ResultCache cache = new ResultCache(tmpFolder.getRoot().getPath(), 250);
+    cache.put("a", new ResultCache.Entry(dts, null, "", false));
+    cache.put("b", new ResultCache.Entry(dts, null, "", false));
+    new File(tmpFolder.getRoot(), "a.entry").setLastModified(1000);
+    new File(tmpFolder.getRoot(), "b.entry").setLastModified(2000);
+    // Reading a refreshes it, so b is the least recently used.
+    assertThat(cache.get("a")).isNotNull();
+
+    cache.put("c", new ResultCache.Entry(dts, null, "", false));
+    assertThat(cache.get("a")).isNotNull();
+    assertThat(cache.get("b")).isNull();
+    assertThat(cache.get("c")).isNotNull();
+  }
+
+  @Test
+  public void testEntriesAreNotPrivate() throws Exception {
+    Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+    ResultCache cache = new ResultCache(tmpFolder.getRoot().getPath(), 1024 * 1024);
+    cache.put("key", new ResultCache.Entry("declare var x: number;\n", null, "", false));
+    File plain = tmpFolder.newFile("plain");
+    // Entries get the permissions of any new file, so that a shared cache can be read by others.
+    assertThat(Files.getPosixFilePermissions(new File(tmpFolder.getRoot(), "key.entry").toPath()))
+        .isEqualTo(Files.getPosixFilePermissions(plain.toPath()));
+  }
+
+  @Test
+  public void testKeyDependsOnContentAndOptions() throws Exception {
+    Options opts = new Options();
+    String key = computeKey(opts, "a.js", "var x;");
+    assertThat(computeKey(opts, "a.js", "var x;")).isEqualTo(key);
+    assertThat(computeKey(opts, "a.js", "var y;")).isNotEqualTo(key);
+    assertThat(computeKey(opts, "b.js", "var x;")).isNotEqualTo(key);
+
+    opts.debug = true;
+    assertThat(computeKey(opts, "a.js", "var x;")).isNotEqualTo(key);
+  }
+
+  private static String computeKey(Options opts, String fileName, String code) throws Exception {
+    return ResultCache.computeKey(
+        opts, ImmutableList.of(SourceFile.fromCode(fileName, code)), ImmutableList.of());
+  }
+}
@@ -0,0 +1,111 @@
+package com.google.javascript.clutz;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.Lists;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ShardedOutputTest {
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  private static final Pattern REFERENCE = Pattern.compile("/// <reference path=\"([^\"]*)\"/>");
+
+  private static final Path SHARDED =
+      DeclarationGeneratorTest.getTestDataFolderPath().resolve("sharded");
+
+  @Test
+  public void testShardsHoldTheirRootsProvides() throws Exception {
+    Path out = generateShards();
+
+    String widget = readFile(shardOf(out, "widget.js"));
+    assertThat(widget).contains("declare module 'goog:sharded.Widget'");
+    assertThat(widget).doesNotContain("sharded.nested.count");
+    String count = readFile(shardOf(out, "nested/count.js"));
+    assertThat(count).contains("declare module 'goog:sharded.nested.count'");
+    assertThat(count).doesNotContain("goog:sharded.Widget");
+
+    // The unprovided type used by the widget shard is shared by all shards.
+    String common = readFile(out.resolve(DeclarationGenerator.COMMON_SHARD));
+    assertThat(common).contains("class Helper");
+    assertThat(common).doesNotContain("declare module 'goog:");
+    assertThat(widget).doesNotContain("class Helper");
+  }
+
+  @Test
+  public void testShardsReferenceTheCommonShard() throws Exception {
+    Path out = generateShards();
+    Path common = out.resolve(DeclarationGenerator.COMMON_SHARD);
+    for (String root : new String[] {"widget.js", "nested/count.js"}) {
+      Path shard = shardOf(out, root);
+      Matcher reference = REFERENCE.matcher(readFile(shard));
+      assertThat(reference.find()).isTrue();
+      assertThat(shard.getParent().resolve(reference.group(1)).normalize()).isEqualTo(common);
+    }
+  }
+
+  @Test
+  public void testShardsCompileAgainstTheCommonShard() throws Exception {
+    Path out = generateShards();
+    List<String> tscCommand =
+        Lists.newArrayList(DeclarationSyntaxTest.TSC.toString(), "-m", "commonjs");
+    tscCommand.addAll(DeclarationSyntaxTest.TSC_FLAGS);
+    tscCommand.add("src/resources/closure.lib.d.ts");
+    // The common shard is only pulled in through the references of the shards.
+    tscCommand.add(shardOf(out, "widget.js").toString());
+    tscCommand.add(shardOf(out, "nested/count.js").toString());
+    tscCommand.add(SHARDED.resolve("usage.ts").toString());
+    DeclarationSyntaxTest.runChecked(tscCommand);
+  }
+
+  private Path generateShards() throws Exception {
+    File out = tmpFolder.newFolder("out");
+    Options opts =
+        new Options(
+            new String[] {
+              ProgramSubject.resource("src/test/java/com/google/javascript/clutz/testdata/base.js"),
+              rootPath("widget.js"),
+              rootPath("nested/count.js"),
+              "--externs",
+              ProgramSubject.resource("src/resources/es6_min.js"),
+              "--shard_output_by_root",
+              "-o",
+              out.getPath()
+            });
+    PrintStream err = System.err;
+    ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+    try {
+      System.setErr(new PrintStream(diagnostics));
+      new DeclarationGenerator(opts).generateDeclarations();
+    } finally {
+      System.setErr(err);
+    }
+    assertThat(diagnostics.toString()).isEmpty();
+    return out.toPath();
+  }
+
+  private static String rootPath(String fileName) {
+    return SHARDED.resolve(fileName).toString();
+  }
+
+  private static Path shardOf(Path out, String fileName) {
+    return out.resolve(DeclarationGenerator.getShardPath(rootPath(fileName)));
+  }
+
+  private static String readFile(Path file) throws Exception {
+    return new String(Files.readAllBytes(file), UTF_8);
+  }
+}
@@ -0,0 +1,14 @@
+// Generated from src/test/java/com/google/javascript/clutz/testdata/only_reachable_externs.js
+declare namespace ಠ_ಠ.clutz.reachable {
+  let c : ಠ_ಠ.clutz.ext.Used ;
+}
+declare module 'goog:reachable.c' {
+  import c = ಠ_ಠ.clutz.reachable.c;
+  export default c;
+}
+// Generated from src/test/java/com/google/javascript/clutz/testdata/only_reachable_externs.externs.js
+declare namespace ಠ_ಠ.clutz.ext {
+  class Used {
+    private noStructuralTyping_ext_Used : any;
+  }
+}
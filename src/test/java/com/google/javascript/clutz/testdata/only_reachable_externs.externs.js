@@ -0,0 +1,11 @@
+/** @const */
+var ext = {};
+
+/** @constructor */
+ext.Used = function() {};
+
+/** @constructor */
+ext.Unused = function() {};
+
+/** @type {number} */
+ext.unusedValue = 0;
@@ -0,0 +1,4 @@
+goog.provide('reachable.c');
+
+/** @type {!ext.Used} */
+reachable.c = new ext.Used();
@@ -0,0 +1,21 @@
+// Generated from src/test/java/com/google/javascript/clutz/testdata/only_reachable_externs_unprovided.js
+declare namespace ಠ_ಠ.clutz.reachable {
+  let d : ಠ_ಠ.clutz.ext.Wrapper ;
+}
+declare module 'goog:reachable.d' {
+  import d = ಠ_ಠ.clutz.reachable.d;
+  export default d;
+}
+// Generated from src/test/java/com/google/javascript/clutz/testdata/only_reachable_externs_unprovided.externs.js
+declare namespace ಠ_ಠ.clutz.ext {
+  class Wrapper {
+    private noStructuralTyping_ext_Wrapper : any;
+    helper : ಠ_ಠ.clutz.reachable.Helper ;
+  }
+}
+// Generated from src/test/java/com/google/javascript/clutz/testdata/only_reachable_externs_unprovided.js
+declare namespace ಠ_ಠ.clutz.reachable {
+  class Helper {
+    private noStructuralTyping_reachable_Helper : any;
+  }
+}
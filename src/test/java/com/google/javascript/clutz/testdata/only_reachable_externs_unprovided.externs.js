@@ -0,0 +1,8 @@
+/** @const */
+var ext = {};
+
+/** @constructor */
+ext.Wrapper = function() {};
+
+/** @type {!reachable.Helper} */
+ext.Wrapper.prototype.helper;
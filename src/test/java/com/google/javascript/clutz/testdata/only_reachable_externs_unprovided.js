@@ -0,0 +1,7 @@
+goog.provide('reachable.d');
+
+/** @constructor */
+reachable.Helper = function() {};
+
+/** @type {!ext.Wrapper} */
+reachable.d = new ext.Wrapper();
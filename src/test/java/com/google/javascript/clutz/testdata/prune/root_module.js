@@ -0,0 +1,3 @@
+import {value} from './es6_dependency.js';
+
+export const root = value;
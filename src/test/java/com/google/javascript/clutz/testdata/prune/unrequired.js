@@ -0,0 +1,4 @@
+goog.provide('unrequired');
+
+/** @type {number} */
+unrequired.value = 1;
@@ -0,0 +1,4 @@
+goog.provide('sharded.nested.count');
+
+/** @const {number} */
+sharded.nested.count = 1;
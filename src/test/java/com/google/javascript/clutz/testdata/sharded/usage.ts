@@ -0,0 +1,5 @@
+import Widget from 'goog:sharded.Widget';
+import count from 'goog:sharded.nested.count';
+
+const helper: ಠ_ಠ.clutz.sharded.Helper = new Widget().helper;
+const n: number = count;
@@ -0,0 +1,10 @@
+goog.provide('sharded.Widget');
+
+/** @constructor */
+sharded.Helper = function() {};
+
+/** @constructor */
+sharded.Widget = function() {
+  /** @type {!sharded.Helper} */
+  this.helper = new sharded.Helper();
+};
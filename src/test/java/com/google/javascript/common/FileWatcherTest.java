@@ -0,0 +1,44 @@
+package com.google.javascript.common;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Set;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class FileWatcherTest {
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testReportsOnlyWatchedFiles() throws Exception {
+    File watched = tmpFolder.newFile("watched.js");
+    File other = tmpFolder.newFile("other.js");
+    Set<Path> files = FileWatcher.toPaths(ImmutableList.of(watched.getPath()));
+    try (FileWatcher watcher = new FileWatcher(FileWatcher.DEFAULT_DEBOUNCE_MILLIS)) {
+      Thread writer =
+          new Thread(
+              () -> {
+                try {
+                  Thread.sleep(100);
+                  Files.asCharSink(other, UTF_8).write("var other;");
+                  Files.asCharSink(watched, UTF_8).write("var a;");
+                  Files.asCharSink(watched, UTF_8).write("var b;");
+                } catch (Exception e) {
+                  throw new AssertionError(e);
+                }
+              });
+      writer.start();
+      assertThat(watcher.awaitChanges(files)).containsExactlyElementsIn(files);
+      writer.join();
+    }
+  }
+}
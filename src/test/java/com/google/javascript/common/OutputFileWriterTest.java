@@ -0,0 +1,78 @@
+package com.google.javascript.common;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.Files;
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class OutputFileWriterTest {
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testSkipsUnchangedFiles() throws Exception {
+    OutputFileWriter writer = new OutputFileWriter();
+    File file = new File(tmpFolder.getRoot(), "nested/dir/out.d.ts");
+
+    assertThat(writer.write(file, "declare var x: number;\n")).isTrue();
+    assertThat(Files.asCharSource(file, UTF_8).read()).isEqualTo("declare var x: number;\n");
+
+    assertThat(writer.write(file, "declare var x: number;\n")).isFalse();
+    // Same size, different content.
+    assertThat(writer.write(file, "declare var y: number;\n")).isTrue();
+    assertThat(Files.asCharSource(file, UTF_8).read()).isEqualTo("declare var y: number;\n");
+
+    assertThat(writer.getWrittenCount()).isEqualTo(2);
+    assertThat(writer.getSkippedCount()).isEqualTo(1);
+    // No temporary files are left behind.
+    assertThat(file.getParentFile().list()).asList().containsExactly("out.d.ts");
+  }
+
+  @Test
+  public void testStreamsContent() throws Exception {
+    OutputFileWriter writer = new OutputFileWriter();
+    File file = new File(tmpFolder.getRoot(), "out.d.ts");
+
+    assertThat(writer.write(file, w -> w.write("declare var \u00e9: number;\n"))).isTrue();
+    assertThat(Files.asCharSource(file, UTF_8).read()).isEqualTo("declare var \u00e9: number;\n");
+    assertThat(writer.write(file, "declare var \u00e9: number;\n")).isFalse();
+    assertThat(writer.write(file, w -> w.write("declare var \u00e9: number;\n"))).isFalse();
+    assertThat(writer.write(file, w -> w.write("declare var y: number;\n"))).isTrue();
+
+    assertThat(writer.getWrittenCount()).isEqualTo(2);
+    assertThat(writer.getSkippedCount()).isEqualTo(2);
+    assertThat(file.getParentFile().list()).asList().containsExactly("out.d.ts");
+  }
+
+  @Test
+  public void testKeepsPermissions() throws Exception {
+    Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+    OutputFileWriter writer = new OutputFileWriter();
+    File file = new File(tmpFolder.getRoot(), "out.d.ts");
+    File plain = new File(tmpFolder.getRoot(), "plain.d.ts");
+
+    writer.write(file, "declare var x: number;\n");
+    Files.write("declare var x: number;\n", plain, UTF_8);
+    // New files get the same permissions as any other new file, not the owner only permissions of
+    // java.nio.file.Files.createTempFile.
+    assertThat(java.nio.file.Files.getPosixFilePermissions(file.toPath()))
+        .isEqualTo(java.nio.file.Files.getPosixFilePermissions(plain.toPath()));
+
+    Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+    java.nio.file.Files.setPosixFilePermissions(file.toPath(), permissions);
+    assertThat(writer.write(file, "declare var y: number;\n")).isTrue();
+    assertThat(writer.write(file, w -> w.write("declare var z: number;\n"))).isTrue();
+    assertThat(java.nio.file.Files.getPosixFilePermissions(file.toPath())).isEqualTo(permissions);
+  }
+}
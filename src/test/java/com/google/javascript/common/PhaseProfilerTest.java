@@ -0,0 +1,78 @@
+package com.google.javascript.common;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PhaseProfilerTest {
+
+  @Test
+  public void testDisabledProfilerRecordsNothing() {
+    PhaseProfiler profiler = PhaseProfiler.DISABLED;
+    try (PhaseProfiler.Phase p = profiler.start("compile")) {
+      // nothing
+    }
+    assertThat(profiler.toJson(PhaseProfiler.DEFAULT_TOP_N)).doesNotContain("compile");
+  }
+
+  @Test
+  public void testJsonReportsPhasesAndTopItems() {
+    PhaseProfiler profiler = PhaseProfiler.create();
+    try (PhaseProfiler.Phase p = profiler.start("compile")) {
+      // nothing
+    }
+    for (String provide : new String[] {"a.b", "a.c", "a.d"}) {
+      try (PhaseProfiler.Phase p = profiler.start("declareNamespace", provide)) {
+        // nothing
+      }
+    }
+    String json = profiler.toJson(2);
+    assertThat(json).contains("\"compile\"");
+    assertThat(json).contains("\"declareNamespace\"");
+    assertThat(json).contains("\"count\": 3");
+    // Only the top 2 provides are listed.
+    int listed = 0;
+    for (String provide : new String[] {"a.b", "a.c", "a.d"}) {
+      if (json.contains("\"" + provide + "\"")) {
+        listed++;
+      }
+    }
+    assertThat(listed).isEqualTo(2);
+  }
+
+  @Test
+  public void testReportsPeakHeap() {
+    PhaseProfiler profiler = PhaseProfiler.create();
+    int size = 64 * 1024 * 1024;
+    try (PhaseProfiler.Phase outer = profiler.start("compile")) {
+      try (PhaseProfiler.Phase inner = profiler.start("collectTypedefs")) {
+        byte[] allocated = new byte[size];
+        assertThat(allocated).hasLength(size);
+      }
+    }
+    Matcher peaks = Pattern.compile("\"peakHeapBytes\": (\\d+)").matcher(profiler.toJson(1));
+    int phases = 0;
+    while (peaks.find()) {
+      // The enclosing phase includes the peak of the nested one.
+      assertThat(Long.parseLong(peaks.group(1))).isAtLeast((long) size);
+      phases++;
+    }
+    assertThat(phases).isEqualTo(2);
+  }
+
+  @Test
+  public void testChromeTrace() {
+    PhaseProfiler profiler = PhaseProfiler.create();
+    try (PhaseProfiler.Phase p = profiler.start("collectTypedefs")) {
+      // nothing
+    }
+    String trace = profiler.toChromeTrace();
+    assertThat(trace).startsWith("{\"traceEvents\":[{\"name\":\"collectTypedefs\"");
+    assertThat(trace).contains("\"ph\":\"X\"");
+  }
+}
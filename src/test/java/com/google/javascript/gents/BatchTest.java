@@ -0,0 +1,71 @@
+package com.google.javascript.gents;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class BatchTest {
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  private static final String UNIT_FILE =
+      TypeScriptGeneratorTest.getTestDirPath("batchTests", "a", "a.js").toString();
+  private static final String BROKEN_FILE =
+      TypeScriptGeneratorTest.getTestDirPath("batchTests", "b", "broken.js").toString();
+
+  @Test
+  public void testUnitsDoNotCompileOtherUnits() throws Exception {
+    File unitOut = tmpFolder.newFolder("unit");
+    File brokenOut = tmpFolder.newFolder("broken");
+    File manifest = tmpFolder.newFile("batch.json");
+    Files.asCharSink(manifest, UTF_8)
+        .write(
+            "[{\"convert\": [\""
+                + UNIT_FILE
+                + "\"], \"output\": \""
+                + unitOut.getPath()
+                + "\"}, {\"convert\": [\""
+                + BROKEN_FILE
+                + "\"], \"output\": \""
+                + brokenOut.getPath()
+                + "\"}]");
+    Options options = new Options(new String[] {"--batchManifest", manifest.getPath()});
+
+    PrintStream err = System.err;
+    ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+    int exitCode;
+    try {
+      System.setErr(new PrintStream(diagnostics));
+      exitCode = TypeScriptGenerator.generateBatch(options);
+    } finally {
+      System.setErr(err);
+    }
+    // Only the unit with the broken file fails, the other unit never compiles it.
+    assertThat(exitCode).isEqualTo(2);
+    assertThat(diagnostics.toString()).contains("Converting " + brokenOut.getPath() + ":");
+    assertThat(diagnostics.toString()).doesNotContain("Converting " + unitOut.getPath() + ":");
+
+    // The output of the unit is the one of converting its files on their own.
+    File aloneOut = tmpFolder.newFolder("alone");
+    Options alone =
+        new Options(new String[] {"--convert", UNIT_FILE, "-o", aloneOut.getPath()});
+    assertThat(TypeScriptGenerator.generate(alone, Sets.newLinkedHashSet(alone.filesToConvert)))
+        .isEqualTo(0);
+    String tsFile = new PathUtil(".", "").removeExtension(UNIT_FILE) + ".ts";
+    assertThat(readFile(new File(unitOut, tsFile))).isEqualTo(readFile(new File(aloneOut, tsFile)));
+  }
+
+  private static String readFile(File file) throws Exception {
+    return Files.asCharSource(file, UTF_8).read();
+  }
+}
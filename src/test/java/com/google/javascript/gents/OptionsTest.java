@@ -1,17 +1,24 @@
 package com.google.javascript.gents;
 
 import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.fail;
 
+import com.google.common.io.Files;
+import com.google.javascript.common.PhaseProfiler;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.PrintStream;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.kohsuke.args4j.CmdLineException;
 
 @RunWith(JUnit4.class)
 public class OptionsTest {
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
 
   @Test
   public void testFullUsage() throws Exception {
@@ -36,6 +43,62 @@ public class OptionsTest {
     assertThat(opts.externsMapFile).isEqualTo(TEST_EXTERNS_MAP);
   }
 
+  @Test
+  public void testProfile() throws Exception {
+    Options opts =
+        new Options(
+            new String[] {
+              "foo.js", "--log", "rewrite.log", "--profile", "profile.json", "--profileFormat",
+              "CHROME_TRACE"
+            });
+    assertThat(opts.profileFile).isEqualTo("profile.json");
+    assertThat(opts.profileFormat).isEqualTo(PhaseProfiler.Format.CHROME_TRACE);
+    assertThat(new Options(new String[] {"foo.js"}).profileFile).isNull();
+  }
+
+  @Test
+  public void testBatchManifest() throws Exception {
+    File sources = tmpFolder.newFile("sources.txt");
+    Files.asCharSink(sources, UTF_8).write("a/x.js\na/y.js\n");
+    File manifest = tmpFolder.newFile("batch.json");
+    Files.asCharSink(manifest, UTF_8)
+        .write(
+            "[{\"sourcesManifest\": \""
+                + sources.getPath()
+                + "\", \"output\": \"out/a\"},"
+                + " {\"convert\": [\"b/z.js\"], \"dependencies\": [\"a/x.js\", \"e.js\"],"
+                + " \"output\": \"out/b\", \"log\": \"b.json\"}]");
+
+    Options opts =
+        new Options(
+            new String[] {"--batchManifest", manifest.getPath(), "--batchJobs", "2", "d.js"});
+    assertThat(opts.batchJobs).isEqualTo(2);
+    assertThat(opts.srcFiles)
+        .containsExactly("d.js", "a/x.js", "a/y.js", "b/z.js", "e.js")
+        .inOrder();
+
+    // Units are compiled without the files of other units, unless they depend on them.
+    Options unit = opts.forBatchUnit(opts.batch.getUnits().get(0));
+    assertThat(unit.srcFiles).containsExactly("d.js", "a/x.js", "a/y.js").inOrder();
+    unit = opts.forBatchUnit(opts.batch.getUnits().get(1));
+    assertThat(unit.filesToConvert).containsExactly("b/z.js");
+    assertThat(unit.srcFiles).containsExactly("d.js", "a/x.js", "e.js", "b/z.js").inOrder();
+    assertThat(unit.output).isEqualTo("out/b");
+    assertThat(unit.moduleRewriteLog).isEqualTo("b.json");
+  }
+
+  @Test
+  public void testBatchManifestWithProfile() throws Exception {
+    File manifest = tmpFolder.newFile("batch.json");
+    Files.asCharSink(manifest, UTF_8).write("[{\"convert\": [\"a.js\"], \"output\": \"out\"}]");
+    try {
+      new Options(new String[] {"--batchManifest", manifest.getPath(), "--profile", "p.json"});
+      fail("Should throw");
+    } catch (CmdLineException expected) {
+      assertThat(expected.getMessage()).contains("--profile");
+    }
+  }
+
   @Test
   public void testHandleEmptyCommandLine() throws Exception {
     ByteArrayOutputStream out = new ByteArrayOutputStream();
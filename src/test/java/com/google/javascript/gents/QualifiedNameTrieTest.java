@@ -0,0 +1,42 @@
+package com.google.javascript.gents;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.NodeUtil;
+import com.google.javascript.rhino.Node;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class QualifiedNameTrieTest {
+  private final Compiler compiler = new Compiler();
+
+  @Test
+  public void testFindsLongestPrefix() {
+    QualifiedNameTrie<String> trie = new QualifiedNameTrie<>();
+    trie.put("a", "A");
+    trie.put("a.b.c", "C");
+    trie.put("x.y", "Y");
+
+    Node name = NodeUtil.newQName(compiler, "a.b.c.d");
+    QualifiedNameTrie.Match<String> match = trie.findLongestPrefix(name);
+    assertThat(match.value).isEqualTo("C");
+    assertThat(match.node.getQualifiedName()).isEqualTo("a.b.c");
+
+    match = trie.findLongestPrefix(NodeUtil.newQName(compiler, "a.b.e"));
+    assertThat(match.value).isEqualTo("A");
+    assertThat(match.node.getQualifiedName()).isEqualTo("a");
+  }
+
+  @Test
+  public void testNoMatch() {
+    QualifiedNameTrie<String> trie = new QualifiedNameTrie<>();
+    trie.put("x.y", "Y");
+
+    assertThat(trie.findLongestPrefix(NodeUtil.newQName(compiler, "x"))).isNull();
+    assertThat(trie.findLongestPrefix(NodeUtil.newQName(compiler, "x.z.y"))).isNull();
+    assertThat(trie.findLongestPrefix(NodeUtil.newQName(compiler, "y.x"))).isNull();
+  }
+}
@@ -19,6 +19,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -53,7 +54,18 @@ public class TypeScriptGeneratorMultiTest {
 
   @Test
   public void runTest() throws Exception {
-    TypeScriptGenerator gents = new TypeScriptGenerator(new Options());
+    runTest(new Options());
+  }
+
+  @Test
+  public void runTestParsingOnlyDependencies() throws Exception {
+    Options options = new Options();
+    options.parseOnlyDependencies = true;
+    runTest(options);
+  }
+
+  private void runTest(Options options) throws Exception {
+    TypeScriptGenerator gents = new TypeScriptGenerator(options);
 
     List<File> testFiles =
         getTestInputFilesRecursive(DeclarationGeneratorTest.JS, multiTestPath, dir.getName());
@@ -111,6 +123,42 @@ public class TypeScriptGeneratorMultiTest {
     }
   }
 
+  @Test
+  public void runTestEmittingOneFile() throws Exception {
+    // A --watch iteration converts all files again, but only emits the changed ones. Their code
+    // must not differ from a full conversion.
+    List<File> testFiles =
+        getTestInputFilesRecursive(DeclarationGeneratorTest.JS, multiTestPath, dir.getName());
+    Set<String> sourceNames = new LinkedHashSet<>();
+    List<SourceFile> sourceFiles = new ArrayList<>();
+    for (File sourceFile : testFiles) {
+      String filepath = sourceFile.getPath();
+      String sourceText = TypeScriptGeneratorTest.getFileText(sourceFile);
+      sourceFiles.add(SourceFile.fromCode(filepath, sourceText));
+      if (!filepath.endsWith("_keep.js") && !filepath.endsWith("_keep.es5.js")) {
+        sourceNames.add(filepath);
+      }
+    }
+
+    for (String sourceName : sourceNames) {
+      TypeScriptGenerator gents = new TypeScriptGenerator(new Options());
+      ByteArrayOutputStream errStream = new ByteArrayOutputStream();
+      gents.setErrorStream(new PrintStream(errStream));
+      Map<String, String> emitted = new HashMap<>();
+      gents.generateTypeScript(
+          sourceNames,
+          ImmutableSet.of(sourceName),
+          sourceFiles,
+          Collections.emptyList(),
+          (sourceFileName, tsCode) -> emitted.put(sourceFileName, tsCode));
+
+      assertThat(new String(errStream.toByteArray(), StandardCharsets.UTF_8)).isEmpty();
+      File goldenFile = DeclarationGeneratorTest.getGoldenFile(new File(sourceName), ".ts");
+      assertThat(emitted)
+          .containsExactly(sourceName, TypeScriptGeneratorTest.getFileText(goldenFile));
+    }
+  }
+
   private static List<File> getTestInputFilesRecursive(FilenameFilter filter, String... dir) {
     ImmutableList.Builder<File> filesBuilder = ImmutableList.builder();
 
@@ -0,0 +1,6 @@
+goog.module('batch.a');
+
+/** @return {number} */
+exports.one = function() {
+  return 1;
+};
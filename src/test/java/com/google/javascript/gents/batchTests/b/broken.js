@@ -0,0 +1,4 @@
+goog.module('batch.broken');
+
+// Does not parse, so that any unit compiling this file fails.
+const = 1;